@@ -0,0 +1,70 @@
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+public class BoolPartitionKeyComponent implements IPartitionKeyComponent {
+    public static final BoolPartitionKeyComponent TRUE = new BoolPartitionKeyComponent(true);
+    public static final BoolPartitionKeyComponent FALSE = new BoolPartitionKeyComponent(false);
+
+    private final boolean value;
+
+    public BoolPartitionKeyComponent(boolean value) {
+        this.value = value;
+    }
+
+    public boolean getValue() {
+        return value;
+    }
+
+    @Override
+    public int CompareTo(IPartitionKeyComponent other) {
+        if (other.getClass() != BoolPartitionKeyComponent.class) {
+            throw new IllegalArgumentException("other");
+        }
+
+        return Boolean.compare(this.value, ((BoolPartitionKeyComponent) other).value);
+    }
+
+    @Override
+    public int GetTypeOrdinal() {
+        return this.value
+                ? PartitionKeyComponentType.TRUE.type
+                : PartitionKeyComponentType.FALSE.type;
+    }
+
+    @Override
+    public void JsonEncode(JsonGenerator writer) {
+        try {
+            writer.writeBoolean(this.value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void WriteForHashing(OutputStream outputStream) {
+        WriteForBinaryEncoding(outputStream);
+    }
+
+    @Override
+    public void WriteForBinaryEncoding(OutputStream outputStream) {
+        try {
+            outputStream.write(GetTypeOrdinal());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void WriteForHashingV2(OutputStream binaryWriter) {
+        WriteForBinaryEncoding(binaryWriter);
+    }
+
+    @Override
+    public IPartitionKeyComponent Truncate() {
+        return this;
+    }
+}
@@ -49,7 +49,7 @@ public class CmdLineOptions {
   )
   private String ingestionFrom;
 
-  @Parameter(names = "-storeType", description = "Specify store type adl or azureblob")
+  @Parameter(names = "-storeType", description = "Specify store type adl, azureblob or local")
   private String storeType;
 
   @Parameter(
@@ -61,6 +61,22 @@ public class CmdLineOptions {
   @Parameter(names = "-usql", description = "Creates and submits usql jobs")
   private String usql;
 
+  @Parameter(
+    names = "-shuffle",
+    description =
+        "Shuffles files of a folder into partition_id_N folders on this machine instead of "
+            + "Usql. Example: -shuffle /data/ -storeType adl"
+  )
+  private String shuffle;
+
+  @Parameter(
+    names = "-sort",
+    description =
+        "Sorts the partition_id_N folders of a shuffle output folder on this machine instead of "
+            + "Usql. Example: -sort /shuffleTest/ -storeType adl"
+  )
+  private String sort;
+
   @Parameter(names = "-sh", description = "Use this to indicate Usql shuffle phase")
   private boolean isShufflePhase = false;
 
@@ -120,6 +136,14 @@ public class CmdLineOptions {
     return usql;
   }
 
+  String getShuffle() {
+    return shuffle;
+  }
+
+  String getSort() {
+    return sort;
+  }
+
   String getStoreType() {
     return storeType;
   }
@@ -19,14 +19,14 @@
 
 package com.microsoft.azure.cosmosdb.sql.jsonstoreimport;
 
-import java.util.List;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonDocBatchReader;
 
 public class DocumentGroup {
   ImportWorkItem importWorkItem;
-  List<String> jsonDocs;
+  JsonDocBatchReader jsonDocBatches;
 
-  public DocumentGroup(ImportWorkItem jsonStoreEntity, List<String> jsonDocs) {
+  public DocumentGroup(ImportWorkItem jsonStoreEntity, JsonDocBatchReader jsonDocBatches) {
     this.importWorkItem = jsonStoreEntity;
-    this.jsonDocs = jsonDocs;
+    this.jsonDocBatches = jsonDocBatches;
   }
 }
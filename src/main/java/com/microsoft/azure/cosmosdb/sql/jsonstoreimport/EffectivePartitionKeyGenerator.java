@@ -0,0 +1,180 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Computes Cosmos DB effective partition keys on the client, the java counterpart of the
+ * EffectivePartitionKeyGenerator used by the generated U-SQL. Version 1 prefixes the binary
+ * encoded, truncated components with their MurmurHash3 x86_32 hash, version 2 is the
+ * MurmurHash3 x64_128 hash of the components. Encoding and hashing reuse a buffer per thread.
+ */
+public final class EffectivePartitionKeyGenerator {
+
+  public static final String MINIMUM_INCLUSIVE_EFFECTIVE_PARTITION_KEY = "";
+  public static final String MAXIMUM_EXCLUSIVE_EFFECTIVE_PARTITION_KEY = "FF";
+
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+  private static final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+  private EffectivePartitionKeyGenerator() {}
+
+  /**
+   * Maps a partition key value to its component: strings, numbers, booleans and null, components
+   * are passed through so undefined and infinity can be given as well.
+   */
+  public static IPartitionKeyComponent toComponent(Object value) {
+    if (value == null) {
+      return NullPartitionKeyComponent.VALUE;
+    }
+    if (value instanceof String) {
+      return new StringPartitionKeyComponent((String) value);
+    }
+    if (value instanceof Number) {
+      return new NumberPartitionKeyComponent(((Number) value).doubleValue());
+    }
+    if (value instanceof Boolean) {
+      return (Boolean) value ? BoolPartitionKeyComponent.TRUE : BoolPartitionKeyComponent.FALSE;
+    }
+    if (value instanceof IPartitionKeyComponent) {
+      return (IPartitionKeyComponent) value;
+    }
+    throw new IllegalArgumentException("Unsupported partition key value " + value.getClass());
+  }
+
+  public static String getEffectivePartitionKey(
+      boolean isHashV2, IPartitionKeyComponent... components) {
+    return isHashV2
+        ? getEffectivePartitionKeyV2(components)
+        : getEffectivePartitionKeyV1(components);
+  }
+
+  public static String getEffectivePartitionKeyV1(IPartitionKeyComponent... components) {
+    String boundary = getBoundary(components);
+    if (boundary != null) {
+      return boundary;
+    }
+    Buffer buffer = buffers.get();
+    buffer.reset();
+    IPartitionKeyComponent[] truncatedComponents = new IPartitionKeyComponent[components.length];
+    for (int i = 0; i < components.length; i++) {
+      truncatedComponents[i] = components[i].Truncate();
+      truncatedComponents[i].WriteForHashing(buffer);
+    }
+    int hash = MurmurHash3.hash32(buffer.bytes, buffer.length, 0);
+
+    // The unsigned hash is encoded as the leading number component
+    buffer.reset();
+    new NumberPartitionKeyComponent(hash & 0xFFFFFFFFL).WriteForBinaryEncoding(buffer);
+    for (IPartitionKeyComponent truncatedComponent : truncatedComponents) {
+      truncatedComponent.WriteForBinaryEncoding(buffer);
+    }
+    return toHex(buffer.bytes, buffer.length);
+  }
+
+  public static String getEffectivePartitionKeyV2(IPartitionKeyComponent... components) {
+    String boundary = getBoundary(components);
+    if (boundary != null) {
+      return boundary;
+    }
+    Buffer buffer = buffers.get();
+    buffer.reset();
+    for (IPartitionKeyComponent component : components) {
+      component.WriteForHashingV2(buffer);
+    }
+    MurmurHash3.hash128(buffer.bytes, buffer.length, 0, buffer.hash128);
+
+    // Big endian high then low 64 bits, the top 2 bits are cleared to stay below FF
+    char[] hex = new char[32];
+    writeHex(buffer.hash128[1], hex, 0);
+    writeHex(buffer.hash128[0], hex, 16);
+    hex[0] = HEX_DIGITS[Character.digit(hex[0], 16) & 0x3];
+    return new String(hex);
+  }
+
+  /**
+   * Hex of the binary encoded components without hashing, the form partition key range boundaries
+   * take. A version 1 boundary is the encoding of the hash number alone.
+   */
+  public static String toHexEncodedBinaryString(IPartitionKeyComponent... components) {
+    Buffer buffer = buffers.get();
+    buffer.reset();
+    for (IPartitionKeyComponent component : components) {
+      component.WriteForBinaryEncoding(buffer);
+    }
+    return toHex(buffer.bytes, buffer.length);
+  }
+
+  private static String getBoundary(IPartitionKeyComponent[] components) {
+    if (components.length == 0) {
+      return MINIMUM_INCLUSIVE_EFFECTIVE_PARTITION_KEY;
+    }
+    if (components.length == 1 && components[0] instanceof InfinityPartitionKeyComponent) {
+      return MAXIMUM_EXCLUSIVE_EFFECTIVE_PARTITION_KEY;
+    }
+    return null;
+  }
+
+  private static void writeHex(long value, char[] hex, int offset) {
+    for (int i = 15; i >= 0; i--) {
+      hex[offset + i] = HEX_DIGITS[(int) (value & 0xF)];
+      value >>>= 4;
+    }
+  }
+
+  private static String toHex(byte[] bytes, int length) {
+    char[] hex = new char[length * 2];
+    for (int i = 0; i < length; i++) {
+      hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+      hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+    }
+    return new String(hex);
+  }
+
+  /** Growable byte buffer the components are written to, reused by its thread. */
+  private static class Buffer extends OutputStream {
+    private final long[] hash128 = new long[2];
+    private byte[] bytes = new byte[256];
+    private int length;
+
+    void reset() {
+      length = 0;
+    }
+
+    @Override
+    public void write(int b) {
+      if (length == bytes.length) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+      bytes[length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      if (length + len > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + len));
+      }
+      System.arraycopy(b, off, bytes, length, len);
+      length += len;
+    }
+  }
+}
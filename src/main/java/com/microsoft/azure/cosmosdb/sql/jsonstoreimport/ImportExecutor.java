@@ -19,15 +19,33 @@
 
 package com.microsoft.azure.cosmosdb.sql.jsonstoreimport;
 
-import com.google.common.collect.Lists;
 import com.google.gson.Gson;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables.DocumentBatch;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables.DocumentBatchWriterRunnable;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables.LocalFileReaderRunnable;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables.PartitionIngestionRunnable;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables.PendingBatches;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables.ReadDocumentGroupRunnable;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables.ShuffleFileReaderRunnable;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.AdlStoreClientExtension;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.CosmosDbSqlClientExtension;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.StoreListing.ListedFile;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle.PartitionKeyRangeMap;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle.PartitionSorter;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle.ShuffleStage;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.BatchImportWindow;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.BatchSizeController;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.CosmosDbSqlWriter;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.PartitionKeyRangeCache;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.PartitionKeyRangeRouter;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.PartitionKeyRangeRouter.RoutedBatch;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.RejectOutput;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.FileReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonDocBatchReader;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntity;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntityImportResponse;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.RebatchingJsonDocBatchReader;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.ScaleTestReader;
 import com.microsoft.azure.documentdb.ConnectionPolicy;
 import com.microsoft.azure.documentdb.ConsistencyLevel;
@@ -35,7 +53,9 @@ import com.microsoft.azure.documentdb.Document;
 import com.microsoft.azure.documentdb.DocumentClientException;
 import com.microsoft.azure.documentdb.DocumentCollection;
 import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.PartitionKeyDefinitionVersion;
 import com.microsoft.azure.documentdb.RetryOptions;
+import com.microsoft.azure.documentdb.bulkexecutor.DocumentBulkExecutor;
 import com.microsoft.azure.documentdb.internal.routing.PartitionKeyInternal;
 import com.microsoft.azure.documentdb.internal.routing.PartitionKeyInternalHelper;
 import com.microsoft.azure.documentdb.internal.routing.Range;
@@ -43,12 +63,29 @@ import com.microsoft.azure.documentdb.internal.routing.Range;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.Stack;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.log4j.Logger;
 
 class ImportExecutor {
@@ -57,6 +94,9 @@ class ImportExecutor {
   private CosmosDbSqlClientExtension ingestionClient;
   private com.microsoft.azure.documentdb.bulkexecutor.DocumentBulkExecutor bulkImporter;
   private PartitionKeyDefinition cosmosDbPartitionKeyDefinition = null;
+  private PartitionKeyRangeCache partitionKeyRangeCache;
+  private BatchSizeController batchSizeController;
+  private int cosmosDbThroughput;
   private int cosmosDbImportMaxMiniBatchSizeInBytes =
       Settings.getCosmosDbImportMiniBatchMaxSizeInBytes();
   private Gson gson = new Gson();
@@ -105,8 +145,9 @@ class ImportExecutor {
         firstJsonStoreEntity.getJsonStoreEntityInstance();
     JsonStoreReader jsonStoreReader =
         new JsonStoreReader(firstJsonStoreEntityJsonStoreEntityInstance);
-    List<String> firstDocs = jsonStoreReader.getJsonDocs();
-    documentGroupStack.add(new DocumentGroup(firstJsonStoreEntity, firstDocs));
+    JsonDocBatchReader firstDocBatches =
+        jsonStoreReader.getJsonDocBatches(Settings.getIngestionBatchSize());
+    documentGroupStack.add(new DocumentGroup(firstJsonStoreEntity, firstDocBatches));
 
     while (true) {
       // Start reading the next available ADL file and add to stack
@@ -123,12 +164,10 @@ class ImportExecutor {
         logger.info(
             "Writing documents to CosmosDb for "
                 + currentDocGroup.importWorkItem.getMappedCosmosDbDocument().getId());
-        int cosmosDbBulkImportLibBatchSize = Settings.getCosmosDbBulkImportLibBatchSize();
-        if (cosmosDbBulkImportLibBatchSize < 0) {
-          cosmosDbBulkImportLibBatchSize = currentDocGroup.jsonDocs.size();
-        }
         JsonStoreEntityImportResponse jsonStoreEntityImportResponse =
-            processJsonDocsInBatches(currentDocGroup.jsonDocs, cosmosDbBulkImportLibBatchSize);
+            processJsonDocsInBatches(
+                currentDocGroup.importWorkItem.getJsonStoreEntityInstance().getSourceName(),
+                currentDocGroup.jsonDocBatches);
 
         JsonStoreEntity currentJsonStoreEntityInstance =
             currentDocGroup.importWorkItem.getJsonStoreEntityInstance();
@@ -177,35 +216,379 @@ class ImportExecutor {
   }
 
   private JsonStoreEntityImportResponse processJsonDocsInBatches(
-      List<String> jsonDocs, int batchSize) throws Exception {
-
-    List<List<String>> batches = Lists.partition(jsonDocs, batchSize);
-
-    List<JsonStoreEntityImportResponse> jsonStoreEntityImportResponseList = new ArrayList<>();
-    for (List<String> batch : batches) {
-      JsonStoreEntityImportResponse jsonStoreEntityImportResponse =
-          new CosmosDbSqlWriter().ingestJsonStoreEntity(batch, bulkImporter);
-      if (jsonStoreEntityImportResponse.isError()) {
+      String location, JsonDocBatchReader jsonDocBatches) throws Exception {
+    if (Settings.getRouteByPartitionKeyRange()) {
+      return processRoutedJsonDocsInBatches(location, jsonDocBatches);
+    }
 
-        // force re-initiating bulk importer this should cover split scenario for new batches
-        try {
-          initBulkImportDocumentClient(true);
-          // TODO, stop processing the file even for single error
+    // Batches in flight keep the importer they started with when another file re-initiates it
+    DocumentBulkExecutor bulkImporter = this.bulkImporter;
+    PartitionKeyRangeCache partitionKeyRangeCache = this.partitionKeyRangeCache;
+    BatchSizeController batchSizeController = getBatchSizeController();
+    if (batchSizeController != null) {
+      jsonDocBatches =
+          new RebatchingJsonDocBatchReader(jsonDocBatches, batchSizeController::getBatchSize);
+    }
+    BatchImportWindow batchImportWindow = new BatchImportWindow();
+    List<JsonStoreEntityImportResponse> jsonStoreEntityImportResponseList;
+    int screenedOutDocuments;
+    try {
+      while (jsonDocBatches.hasNext()) {
+        List<String> batch = jsonDocBatches.next();
+        // stop processing the file even for single error
+        if (!batchImportWindow.submit(
+            () -> {
+              JsonStoreEntityImportResponse jsonStoreEntityImportResponse =
+                  new CosmosDbSqlWriter()
+                      .ingestJsonStoreEntity(
+                          location, batch, bulkImporter, partitionKeyRangeCache);
+              if (batchSizeController != null) {
+                batchSizeController.record(jsonStoreEntityImportResponse);
+              }
+              return jsonStoreEntityImportResponse;
+            })) {
           break;
-        } catch (Exception e) {
-          logger.error(
-              String.format("Re-initializing bulk importer failed due to " + e.getMessage()));
         }
       }
-      jsonStoreEntityImportResponseList.add(jsonStoreEntityImportResponse);
+      jsonStoreEntityImportResponseList = batchImportWindow.await();
+    } finally {
+      try {
+        // Imports still in flight when reading failed use the reader and the reject output
+        batchImportWindow.close();
+        jsonDocBatches.close();
+      } finally {
+        screenedOutDocuments = RejectOutput.close(location);
+      }
+    }
+    reinitiateOnError(batchImportWindow);
+    return aggregate(jsonStoreEntityImportResponseList, screenedOutDocuments);
+  }
+
+  /** Same as processJsonDocsInBatches, documents are grouped by partition key range first. */
+  private JsonStoreEntityImportResponse processRoutedJsonDocsInBatches(
+      String location, JsonDocBatchReader jsonDocBatches) throws Exception {
+    PartitionKeyRangeRouter router =
+        new PartitionKeyRangeRouter(location, getPartitionKeyRangeCache());
+    // An explicit routingBatchSize is kept, otherwise routed batches follow the adaptive size
+    BatchSizeController batchSizeController =
+        Settings.getRoutingBatchSize() > 0 ? null : getBatchSizeController();
+    BatchImportWindow batchImportWindow = new BatchImportWindow();
+    List<JsonStoreEntityImportResponse> jsonStoreEntityImportResponseList;
+    int screenedOutDocuments;
+    try {
+      boolean isSubmitted = true;
+      while (isSubmitted && jsonDocBatches.hasNext()) {
+        if (batchSizeController != null) {
+          router.setBatchSize(batchSizeController.getBatchSize());
+        }
+        isSubmitted =
+            submitRoutedBatches(
+                location,
+                router,
+                router.route(jsonDocBatches.next()),
+                batchImportWindow,
+                batchSizeController);
+      }
+      if (isSubmitted) {
+        submitRoutedBatches(
+            location, router, router.flush(), batchImportWindow, batchSizeController);
+      }
+      jsonStoreEntityImportResponseList = batchImportWindow.await();
+    } finally {
+      try {
+        // Imports still in flight when reading failed use the reader and the reject output
+        batchImportWindow.close();
+        jsonDocBatches.close();
+      } finally {
+        screenedOutDocuments = RejectOutput.close(location);
+        router.logStatistics();
+      }
+    }
+    reinitiateOnError(batchImportWindow);
+    return aggregate(jsonStoreEntityImportResponseList, screenedOutDocuments);
+  }
+
+  /** Aggregates the batches of a file with the documents its screen rejected. */
+  private static JsonStoreEntityImportResponse aggregate(
+      List<JsonStoreEntityImportResponse> jsonStoreEntityImportResponses,
+      int screenedOutDocuments) {
+    JsonStoreEntityImportResponse aggregateResponse =
+        JsonStoreEntityImportResponse.aggregate(jsonStoreEntityImportResponses);
+    aggregateResponse.addScreenedOutDocuments(screenedOutDocuments);
+    return aggregateResponse;
+  }
+
+  /** @return false when a batch failed, the remaining batches are not imported. */
+  private boolean submitRoutedBatches(
+      String location,
+      PartitionKeyRangeRouter router,
+      List<RoutedBatch> routedBatches,
+      BatchImportWindow batchImportWindow,
+      BatchSizeController batchSizeController)
+      throws InterruptedException {
+    DocumentBulkExecutor bulkImporter = this.bulkImporter;
+    PartitionKeyRangeCache partitionKeyRangeCache = this.partitionKeyRangeCache;
+    for (RoutedBatch routedBatch : routedBatches) {
+      boolean isSubmitted =
+          batchImportWindow.submit(
+              () -> {
+                long start = System.currentTimeMillis();
+                JsonStoreEntityImportResponse jsonStoreEntityImportResponse =
+                    new CosmosDbSqlWriter()
+                        .ingestJsonStoreEntity(
+                            location, routedBatch.jsonDocs, bulkImporter, partitionKeyRangeCache);
+                router.record(
+                    routedBatch, jsonStoreEntityImportResponse, System.currentTimeMillis() - start);
+                if (batchSizeController != null) {
+                  batchSizeController.record(jsonStoreEntityImportResponse);
+                }
+                return jsonStoreEntityImportResponse;
+              });
+      if (!isSubmitted) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Shared by all files as they share the throughput, null unless adaptiveBatchSizing is set. */
+  private synchronized BatchSizeController getBatchSizeController() {
+    if (batchSizeController == null && Settings.getAdaptiveBatchSizing()) {
+      batchSizeController =
+          new BatchSizeController(Settings.getIngestionBatchSize(), cosmosDbThroughput);
+    }
+    return batchSizeController;
+  }
+
+  private void reinitiateOnError(BatchImportWindow batchImportWindow) {
+    if (!batchImportWindow.isError()) {
+      return;
+    }
+    // splits are already retried by the writer, re-initiate the bulk importer for the rest
+    try {
+      initBulkImportDocumentClient(true);
+    } catch (Exception e) {
+      logger.error(String.format("Re-initializing bulk importer failed due to " + e.getMessage()));
     }
-    return JsonStoreEntityImportResponse.aggregate(jsonStoreEntityImportResponseList);
   }
 
   void processJsonStoreEntity(JsonStoreEntity jsonStoreEntity) throws Exception {
     initBulkImportDocumentClient(false);
     JsonStoreReader jsonStoreReader = new JsonStoreReader(jsonStoreEntity);
-    new CosmosDbSqlWriter().ingestJsonStoreEntity(jsonStoreReader.getJsonDocs(), bulkImporter);
+    processJsonDocsInBatches(
+        jsonStoreEntity.getSourceName(),
+        jsonStoreReader.getJsonDocBatches(Settings.getIngestionBatchSize()));
+  }
+
+  /**
+   * Imports local files through a bounded queue between reader and writer threads. A writer that
+   * dies stops the readers, its batch and the batches left in the queue fail their files.
+   *
+   * @return false when files failed to import.
+   */
+  boolean processLocalFiles(String location) throws Exception {
+    List<String> filePaths = FileReader.getLocalFileNames(location);
+    if (filePaths.isEmpty()) {
+      logger.info("No local files found at " + location);
+      return true;
+    }
+    initBulkImportDocumentClient(false);
+    int writerThreads = Settings.getLocalIngestionWriterThreads();
+    BlockingQueue<DocumentBatch> documentBatches =
+        new ArrayBlockingQueue<>(Settings.getLocalIngestionQueuedBatches());
+    Semaphore queuedKb = new Semaphore(Settings.getLocalIngestionMaxQueuedMb() * 1024);
+    Set<String> failedFiles = ConcurrentHashMap.newKeySet();
+    List<JsonStoreEntityImportResponse> jsonStoreEntityImportResponses =
+        Collections.synchronizedList(new ArrayList<>());
+    PendingBatches pendingBatches = new PendingBatches(jsonStoreEntityImportResponses);
+
+    ExecutorService readers =
+        Executors.newFixedThreadPool(Settings.getLocalIngestionReaderThreads());
+    AtomicInteger liveWriters = new AtomicInteger(writerThreads);
+    Runnable onWriterFailure =
+        () -> {
+          liveWriters.decrementAndGet();
+          for (Runnable reader : readers.shutdownNow()) {
+            failedFiles.add(((LocalFileReaderRunnable) reader).getFilePath());
+          }
+        };
+    ExecutorService writers = Executors.newFixedThreadPool(writerThreads);
+    for (int i = 0; i < writerThreads; i++) {
+      writers.execute(
+          new DocumentBatchWriterRunnable(
+              bulkImporter,
+              documentBatches,
+              queuedKb,
+              pendingBatches,
+              failedFiles,
+              jsonStoreEntityImportResponses,
+              onWriterFailure));
+    }
+    for (String filePath : filePaths) {
+      try {
+        readers.execute(
+            new LocalFileReaderRunnable(
+                filePath, documentBatches, queuedKb, pendingBatches, failedFiles));
+      } catch (RejectedExecutionException e) {
+        failedFiles.add(filePath);
+      }
+    }
+    readers.shutdown();
+    readers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    // Writers only leave early by dying and a dead writer never takes its END, so ENDs are only
+    // offered while some writer is alive
+    for (int i = 0; i < writerThreads; i++) {
+      while (!documentBatches.offer(DocumentBatch.END, 1, TimeUnit.SECONDS)) {
+        if (liveWriters.get() == 0) {
+          break;
+        }
+      }
+    }
+    writers.shutdown();
+    writers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    for (DocumentBatch documentBatch : documentBatches) {
+      if (documentBatch != DocumentBatch.END) {
+        failedFiles.add(documentBatch.location);
+      }
+    }
+    // Batches of failed files may never have been written, their rejects are closed here
+    for (String failedFile : failedFiles) {
+      RejectOutput.close(failedFile);
+    }
+
+    JsonStoreEntityImportResponse aggregateResponse =
+        JsonStoreEntityImportResponse.aggregate(jsonStoreEntityImportResponses);
+    logger.info(
+        String.format(
+            "Imported %d of %d documents, rejected %d, from %d local files, %d files failed",
+            aggregateResponse.getNumberOfDocumentsImported(),
+            aggregateResponse.getNumberOfDocumentsReceived(),
+            aggregateResponse.getNumberOfDocumentsRejected(),
+            filePaths.size(),
+            failedFiles.size()));
+    for (String failedFile : failedFiles) {
+      logger.error("Ingestion failed for " + failedFile);
+    }
+    return failedFiles.isEmpty();
+  }
+
+  /** @return false when files failed, the shuffle of the worker has to be run again. */
+  boolean shuffleItems(StoreType storeType, String location) throws Exception {
+    PartitionKeyRangeMap partitionKeyRangeMap = getPartitionKeyRangeMap();
+    logger.info("Shuffling " + location + " by partition key ranges " + partitionKeyRangeMap);
+    int workerCount = Settings.getShuffleWorkerCount();
+    int workerIndex = Settings.getShuffleWorkerIndex();
+    Set<String> failedFiles = ConcurrentHashMap.newKeySet();
+    int shuffledFiles = 0;
+    ExecutorService readers = Executors.newFixedThreadPool(Settings.getShuffleReaderThreads());
+    try (ShuffleStage shuffleStage = new ShuffleStage(partitionKeyRangeMap)) {
+      Iterator<ListedFile> files = ImportQueue.listFiles(storeType, location);
+      while (files.hasNext()) {
+        ListedFile file = files.next();
+        // Every worker of a pool takes its own share of the files, the same share on a rerun
+        if (Math.floorMod(file.location.hashCode(), workerCount) != workerIndex) {
+          continue;
+        }
+        JsonStoreEntity jsonStoreEntity = new JsonStoreEntity();
+        jsonStoreEntity.storeType = storeType;
+        jsonStoreEntity.location = file.location;
+        readers.execute(new ShuffleFileReaderRunnable(jsonStoreEntity, shuffleStage, failedFiles));
+        shuffledFiles++;
+      }
+      readers.shutdown();
+      readers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    } finally {
+      readers.shutdownNow();
+    }
+    logger.info(
+        String.format(
+            "Shuffled %d files as worker %d of %d, %d files failed",
+            shuffledFiles, workerIndex, workerCount, failedFiles.size()));
+    for (String failedFile : failedFiles) {
+      logger.error("Shuffle failed for " + failedFile);
+    }
+    return failedFiles.isEmpty();
+  }
+
+  /** @return false when partitions failed to sort. */
+  boolean sortPartitions(StoreType storeType, String location) throws Exception {
+    PartitionSorter.FileOpener fileOpener;
+    switch (storeType) {
+      case ADL:
+        fileOpener = AdlStoreClientExtension::getReadStream;
+        break;
+      case WINDOWS_FILE_SYSTEM:
+        fileOpener = file -> Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8);
+        break;
+      default:
+        throw new Exception("Unsupported store type for sort.");
+    }
+    int workerCount = Settings.getShuffleWorkerCount();
+    int workerIndex = Settings.getShuffleWorkerIndex();
+    Set<String> failedPartitions = ConcurrentHashMap.newKeySet();
+    int sortedPartitions = 0;
+    ExecutorService sorters = Executors.newFixedThreadPool(Settings.getSortThreads());
+    try {
+      for (String partitionFolder : listFolder(storeType, location)) {
+        String partitionName = Paths.get(partitionFolder).getFileName().toString();
+        if (!partitionName.startsWith("partition_id_")
+            || Math.floorMod(partitionName.hashCode(), workerCount) != workerIndex) {
+          continue;
+        }
+        sorters.execute(
+            () -> {
+              try {
+                new PartitionSorter(partitionName)
+                    .sort(listFolder(storeType, partitionFolder), fileOpener);
+              } catch (Exception e) {
+                logger.error("Sorting " + partitionName + " failed due to " + e.getMessage(), e);
+                failedPartitions.add(partitionName);
+              }
+            });
+        sortedPartitions++;
+      }
+      sorters.shutdown();
+      sorters.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    } finally {
+      sorters.shutdownNow();
+    }
+    logger.info(
+        String.format(
+            "Sorted %d partitions as worker %d of %d, %d partitions failed",
+            sortedPartitions, workerIndex, workerCount, failedPartitions.size()));
+    for (String failedPartition : failedPartitions) {
+      logger.error("Sort failed for " + failedPartition);
+    }
+    return failedPartitions.isEmpty();
+  }
+
+  private static List<String> listFolder(StoreType storeType, String folder) throws IOException {
+    if (storeType == StoreType.ADL) {
+      return AdlStoreClientExtension.getAdlFolderFileNames(folder);
+    }
+    try (Stream<Path> paths = Files.list(Paths.get(folder))) {
+      return paths.map(Path::toString).sorted().collect(Collectors.toList());
+    }
+  }
+
+  private PartitionKeyRangeMap getPartitionKeyRangeMap() throws DocumentClientException {
+    if (!Settings.getShuffleUseCollectionRanges()) {
+      return PartitionKeyRangeMap.uniform(
+          Settings.getNumberOfCosmosDbPartitions(), Settings.getPartitionKeyHashV2());
+    }
+    return getPartitionKeyRangeCache().get();
+  }
+
+  /** Ranges of the collection, refreshed after a split, read again with a new bulk importer. */
+  private synchronized PartitionKeyRangeCache getPartitionKeyRangeCache()
+      throws DocumentClientException {
+    if (partitionKeyRangeCache == null) {
+      initIngestionClient();
+      boolean isHashV2 =
+          cosmosDbPartitionKeyDefinition.getVersion() == PartitionKeyDefinitionVersion.V2;
+      partitionKeyRangeCache = new PartitionKeyRangeCache(ingestionClient, isHashV2);
+    }
+    return partitionKeyRangeCache;
   }
 
   private void initIngestionClient() throws DocumentClientException {
@@ -260,7 +643,7 @@ class ImportExecutor {
       initIngestionClient();
       DocumentCollection cosmosDbCol = ingestionClient.getCollection();
       cosmosDbPartitionKeyDefinition = cosmosDbCol.getPartitionKey();
-      int cosmosDbThroughPut = ingestionClient.getOfferThroughput();
+      cosmosDbThroughput = ingestionClient.getOfferThroughput();
       // this assumes database and collection already exists
       com.microsoft.azure.documentdb.bulkexecutor.DocumentBulkExecutor.Builder bulkImporterBuilder =
           com.microsoft.azure.documentdb.bulkexecutor.DocumentBulkExecutor.builder()
@@ -269,7 +652,7 @@ class ImportExecutor {
                   ingestionClient.getDatabaseName(),
                   ingestionClient.getCollectionName(),
                   cosmosDbPartitionKeyDefinition,
-                  cosmosDbThroughPut);
+                  cosmosDbThroughput);
       if (cosmosDbImportMaxMiniBatchSizeInBytes > 0) {
         bulkImporterBuilder.withMaxMiniBatchSize(cosmosDbImportMaxMiniBatchSizeInBytes);
       }
@@ -280,6 +663,7 @@ class ImportExecutor {
       safeClose(bulkImporter);
       ingestionClient.safeClose();
       ingestionClient = null;
+      partitionKeyRangeCache = null;
       // set to null and re-initiate
       bulkImporter = null;
       initBulkImportDocumentClient(false);
@@ -301,20 +685,9 @@ class ImportExecutor {
       initBulkImportDocumentClient(false);
       JsonStoreReader jsonStoreReader = new JsonStoreReader(jsonStoreEntity);
       JsonStoreEntityImportResponse jsonStoreEntityImportResponse =
-          new CosmosDbSqlWriter()
-              .ingestJsonStoreEntity(jsonStoreReader.getJsonDocs(), bulkImporter);
-      if (jsonStoreEntityImportResponse.isError()) {
-
-        // force re-initiating bulk importer this should cover split scenario for new batches
-        try {
-          initBulkImportDocumentClient(true);
-        } catch (Exception e) {
-          logger.error(
-              String.format(
-                  "Re-initialing bulk importer failed: due to %s. " + "Will retry Later",
-                  e.getMessage()));
-        }
-      }
+          processJsonDocsInBatches(
+              jsonStoreEntity.location,
+              jsonStoreReader.getJsonDocBatches(Settings.getIngestionBatchSize()));
       jsonStoreEntity.jsonStoreEntityImportResponse = jsonStoreEntityImportResponse;
       jsonStoreEntity.isComplete = true;
       jsonStoreEntity.isInProgress = false;
@@ -23,15 +23,22 @@ import com.google.gson.Gson;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.AdlStoreClientExtension;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.AzureBlobClientExtension;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.CosmosDbSqlClientExtension;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.StoreListing.ListedFile;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.CompressedInputStreams;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.FileReader;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntity;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.SourceFormat;
 import com.microsoft.azure.documentdb.Document;
 import com.microsoft.azure.documentdb.DocumentClientException;
-import java.io.IOException;
+import java.io.File;
 import java.lang.management.ManagementFactory;
 import java.net.URLEncoder;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import org.apache.http.HttpStatus;
 import org.apache.log4j.Logger;
 
@@ -76,95 +83,145 @@ public class ImportQueue {
   }
 
   void pushEntities(StoreType storeType, String location, String operation) throws Exception {
-    List<String> queueItems;
+    pushItemsToCosmosDb(listFiles(storeType, location), storeType, operation);
+  }
+
+  static Iterator<ListedFile> listFiles(StoreType storeType, String location) throws Exception {
     switch (storeType) {
       case ADL:
-        queueItems = AdlStoreClientExtension.getAdlFolderFileNames(location);
-        break;
+        return AdlStoreClientExtension.listFiles(location);
       case AZURE_BLOB:
-        queueItems = AzureBlobClientExtension.getListOfBlobs(location);
-        break;
+        return AzureBlobClientExtension.listBlobs(location);
+      case WINDOWS_FILE_SYSTEM:
+        return FileReader.getLocalFileNames(location).stream()
+            .map(file -> new ListedFile(file, new File(file).length()))
+            .iterator();
       default:
         throw new Exception("Unsupported store type for queue.");
     }
-    pushItemsToCosmosDb(queueItems, storeType, operation);
   }
 
   @SuppressWarnings("deprecation")
-  private void pushItemsToCosmosDb(List<String> queueItems, StoreType storeType, String operation)
+  private void pushItemsToCosmosDb(
+      Iterator<ListedFile> queueItems, StoreType storeType, String operation)
       throws DocumentClientException {
 
-    logger.info(String.format("Inserting %d files into Cosmos DB work queue", queueItems.size()));
-    for (int i = 0; i < queueItems.size(); i++) {
-      JsonStoreEntity jsonStoreEntity = new JsonStoreEntity();
-      jsonStoreEntity.id = URLEncoder.encode(queueItems.get(i));
-      jsonStoreEntity.name = queueItems.get(i);
-      jsonStoreEntity.location = queueItems.get(i);
-      jsonStoreEntity.createDate = Instant.now();
-      jsonStoreEntity.isComplete = false;
-      jsonStoreEntity.isInProgress = false;
-      jsonStoreEntity.storeType = storeType;
-      jsonStoreEntity.operation = operation;
+    // Items are inserted as they are listed, the total is only known at the end
+    int insertedItems = 0;
+    long splitSize = Settings.getSplitFileSizeInMb() * 1024L * 1024L;
+    while (queueItems.hasNext()) {
+      ListedFile queueItem = queueItems.next();
+      if (splitSize <= 0 || queueItem.length <= splitSize || !isSplittable(queueItem.location)) {
+        pushItemToCosmosDb(queueItem.location, 0, 0, storeType, operation);
+        insertedItems++;
+        continue;
+      }
+      // Large line delimited files are queued as byte ranges that workers claim independently
+      for (long offset = 0; offset < queueItem.length; offset += splitSize) {
+        long length = Math.min(splitSize, queueItem.length - offset);
+        pushItemToCosmosDb(queueItem.location, offset, length, storeType, operation);
+        insertedItems++;
+      }
+    }
+    logger.info(String.format("Inserted %d items into Cosmos DB work queue", insertedItems));
+  }
 
+  @SuppressWarnings("deprecation")
+  private void pushItemToCosmosDb(
+      String location, long offset, long length, StoreType storeType, String operation)
+      throws DocumentClientException {
+    JsonStoreEntity jsonStoreEntity = new JsonStoreEntity();
+    jsonStoreEntity.id =
+        URLEncoder.encode(length > 0 ? location + "#" + offset + "-" + length : location);
+    jsonStoreEntity.name = location;
+    jsonStoreEntity.location = location;
+    jsonStoreEntity.offset = offset;
+    jsonStoreEntity.length = length;
+    jsonStoreEntity.createDate = Instant.now();
+    jsonStoreEntity.isComplete = false;
+    jsonStoreEntity.isInProgress = false;
+    jsonStoreEntity.storeType = storeType;
+    jsonStoreEntity.operation = operation;
+
+    if (length > 0) {
+      logger.info(
+          String.format("Inserting a file range: %s [%d, %d)", location, offset, offset + length));
+    } else {
       logger.info("Inserting a file: " + jsonStoreEntity.name);
-      queueWriter.createDocument(new Document(gson.toJson(jsonStoreEntity)));
     }
+    queueWriter.createDocument(new Document(gson.toJson(jsonStoreEntity)));
+  }
+
+  /**
+   * Only line delimited files known to be uncompressed can be cut at arbitrary byte offsets, files
+   * of unknown compression are read whole.
+   */
+  private static boolean isSplittable(String location) {
+    return SourceFormat.of(location) == SourceFormat.JSON_LINES
+        && CompressedInputStreams.isUncompressedByName(location);
   }
 
+  /**
+   * Queues the files of the partition folders under location, and then one item per partition
+   * folder for workers to claim. Files are inserted while the folders are listed page by page, and
+   * partitions only once all their files are queued.
+   */
+  @SuppressWarnings("deprecation")
   void pushEntitiesByPartition(StoreType storeType, String location, String operation)
       throws Exception {
-    List<String> queueItemsByPartition;
+    Iterator<ListedFile> partitionFiles;
     switch (storeType) {
       case ADL:
-        queueItemsByPartition = AdlStoreClientExtension.getAdlFolderFileNames(location);
+        partitionFiles = AdlStoreClientExtension.listFiles(location, true);
         break;
       case AZURE_BLOB:
-        queueItemsByPartition = AzureBlobClientExtension.getListOfBlobs(location);
+        partitionFiles = AzureBlobClientExtension.listBlobs(location, true);
         break;
       default:
         throw new Exception("Unsupported store type for queue.");
     }
-    pushItemsToCosmosDbByPartitionId(queueItemsByPartition, storeType, operation);
-  }
-
-  private void pushItemsToCosmosDbByPartitionId(
-      List<String> queueItemsByPartition, StoreType storeType, String operation)
-      throws DocumentClientException, IOException {
-
-    logger.info(
-        String.format(
-            "Inserting %d files into Cosmos DB work queue", queueItemsByPartition.size()));
-    for (int i = 0; i < queueItemsByPartition.size(); i++) {
+    Set<String> partitions = new LinkedHashSet<>();
+    int insertedFiles = 0;
+    while (partitionFiles.hasNext()) {
+      String file = partitionFiles.next().location;
+      String partitionId = file.substring(0, Math.max(file.lastIndexOf('/'), 0));
+      if (partitionId.isEmpty()) {
+        partitionId = location;
+      }
+      partitions.add(partitionId);
+      JsonStoreEntity jsonStoreEntity = new JsonStoreEntity();
+      jsonStoreEntity.id = URLEncoder.encode(file);
+      jsonStoreEntity.name = file;
+      jsonStoreEntity.location = file;
+      jsonStoreEntity.createDate = Instant.now();
+      jsonStoreEntity.isComplete = false;
+      jsonStoreEntity.isInProgress = false;
+      jsonStoreEntity.storeType = storeType;
+      jsonStoreEntity.operation = Constants.OPERATION_PARTITION_FILE_WRITE;
+      jsonStoreEntity.partitionId = partitionId;
+      logger.info("Inserting a file: " + jsonStoreEntity.name);
+      queueWriter.createDocument(new Document(gson.toJson(jsonStoreEntity)));
+      insertedFiles++;
+    }
+    for (String partitionId : partitions) {
       // Insert partition to claim by workers
       JsonStoreEntity partitionJsonStoreEntity = new JsonStoreEntity();
-      partitionJsonStoreEntity.id = URLEncoder.encode(queueItemsByPartition.get(i));
-      partitionJsonStoreEntity.name = queueItemsByPartition.get(i);
-      partitionJsonStoreEntity.location = queueItemsByPartition.get(i);
+      partitionJsonStoreEntity.id = URLEncoder.encode(partitionId);
+      partitionJsonStoreEntity.name = partitionId;
+      partitionJsonStoreEntity.location = partitionId;
       partitionJsonStoreEntity.createDate = Instant.now();
       partitionJsonStoreEntity.isComplete = false;
       partitionJsonStoreEntity.isInProgress = false;
       partitionJsonStoreEntity.storeType = storeType;
       partitionJsonStoreEntity.operation = operation;
-      partitionJsonStoreEntity.partitionId = queueItemsByPartition.get(i);
+      partitionJsonStoreEntity.partitionId = partitionId;
       logger.info("Inserting a partition: " + partitionJsonStoreEntity.name);
       queueWriter.createDocument(new Document(gson.toJson(partitionJsonStoreEntity)));
-      List<String> partitionItems =
-          AdlStoreClientExtension.getAdlFolderFileNames(queueItemsByPartition.get(i));
-      for (int j = 0; j < partitionItems.size(); j++) {
-        JsonStoreEntity jsonStoreEntity = new JsonStoreEntity();
-        jsonStoreEntity.id = URLEncoder.encode(partitionItems.get(j));
-        jsonStoreEntity.name = partitionItems.get(j);
-        jsonStoreEntity.location = partitionItems.get(j);
-        jsonStoreEntity.createDate = Instant.now();
-        jsonStoreEntity.isComplete = false;
-        jsonStoreEntity.isInProgress = false;
-        jsonStoreEntity.storeType = storeType;
-        jsonStoreEntity.operation = Constants.OPERATION_PARTITION_FILE_WRITE;
-        jsonStoreEntity.partitionId = queueItemsByPartition.get(i);
-        logger.info("Inserting a file: " + jsonStoreEntity.name);
-        queueWriter.createDocument(new Document(gson.toJson(jsonStoreEntity)));
-      }
     }
+    logger.info(
+        String.format(
+            "Inserted %d files of %d partitions into Cosmos DB work queue",
+            insertedFiles, partitions.size()));
   }
 
   List<ImportWorkItem> getPartitionClaims(int partitionsCount) throws DocumentClientException {
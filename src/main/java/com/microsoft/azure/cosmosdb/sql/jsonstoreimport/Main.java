@@ -40,8 +40,7 @@ public class Main {
 
     // Step2: Import Local/ADL/AzureBlob file or queued files in Cosmos-DB
     if (cmdLineOptions.getIngestionFrom() != null) {
-      importData(cmdLineOptions);
-      System.exit(0);
+      System.exit(importData(cmdLineOptions) ? 0 : 1);
     }
 
     // Usql scripts for shuffling and sorting data by partition
@@ -50,6 +49,16 @@ public class Main {
       System.exit(0);
     }
 
+    // Local shuffle by partition, replaces the Usql shuffle phase
+    if (cmdLineOptions.getShuffle() != null) {
+      System.exit(shuffleData(cmdLineOptions) ? 0 : 1);
+    }
+
+    // Local sort by hash key, replaces the Usql sort phase
+    if (cmdLineOptions.getSort() != null) {
+      System.exit(sortData(cmdLineOptions) ? 0 : 1);
+    }
+
     if (cmdLineOptions.getTestData() != null) {
 
       generateTestData(cmdLineOptions);
@@ -76,6 +85,12 @@ public class Main {
                 StoreType.ADL, cmdLineOptions.getQueue(), Constants.OPERATION_UNPARTITIONED_WRITES);
       }
 
+    } else if (storeType.equals(Constants.LOCAL)) {
+      new ImportExecutor(true)
+          .queueItems(
+              StoreType.WINDOWS_FILE_SYSTEM,
+              cmdLineOptions.getQueue(),
+              Constants.OPERATION_UNPARTITIONED_WRITES);
     } else if (storeType.equals(Constants.AZURE_BLOB)) {
       new ImportExecutor(true)
           .queueItems(
@@ -85,16 +100,14 @@ public class Main {
     }
   }
 
-  static void importData(CmdLineOptions cmdLineOptions) throws Exception {
+  /** @return false when local files failed to import. */
+  static boolean importData(CmdLineOptions cmdLineOptions) throws Exception {
     String ingestionFrom = cmdLineOptions.getIngestionFrom().toLowerCase();
     switch (ingestionFrom) {
       case Constants.LOCAL:
         if (cmdLineOptions.getIngestionFilePath() != null) {
-          JsonStoreEntity jsonStoreEntity = new JsonStoreEntity();
-          jsonStoreEntity.storeType = StoreType.WINDOWS_FILE_SYSTEM;
-          jsonStoreEntity.location = cmdLineOptions.getIngestionFilePath();
-          new ImportExecutor(false).processJsonStoreEntity(jsonStoreEntity);
-          return;
+          return new ImportExecutor(false)
+              .processLocalFiles(cmdLineOptions.getIngestionFilePath());
         }
       case Constants.ADL:
         if (cmdLineOptions.getIngestionFilePath() != null) {
@@ -102,7 +115,7 @@ public class Main {
           jsonStoreEntity.storeType = StoreType.ADL;
           jsonStoreEntity.location = cmdLineOptions.getIngestionFilePath();
           new ImportExecutor(false).processJsonStoreEntity(jsonStoreEntity);
-          return;
+          return true;
         }
       case Constants.AZURE_BLOB:
         if (cmdLineOptions.getIngestionFilePath() != null) {
@@ -110,7 +123,7 @@ public class Main {
           jsonStoreEntity.storeType = StoreType.AZURE_BLOB;
           jsonStoreEntity.location = cmdLineOptions.getIngestionFilePath();
           new ImportExecutor(false).processJsonStoreEntity(jsonStoreEntity);
-          return;
+          return true;
         }
       case Constants.COSMOS_DB:
         if (cmdLineOptions.getIsSorted()) {
@@ -118,10 +131,10 @@ public class Main {
         } else {
           new ImportExecutor(true).processQueue();
         }
-        return;
+        return true;
       case Constants.SCALE_TEST:
         new ImportExecutor(true).initScaleTest();
-        return;
+        return true;
 
       default:
         throw new Exception(
@@ -144,6 +157,33 @@ public class Main {
     }
   }
 
+  /** @return false when files failed to shuffle. */
+  static boolean shuffleData(CmdLineOptions cmdLineOptions) throws Exception {
+    String storeType = cmdLineOptions.getStoreType().toLowerCase();
+    if (storeType.equals(Constants.ADL)) {
+      return new ImportExecutor(false).shuffleItems(StoreType.ADL, cmdLineOptions.getShuffle());
+    } else if (storeType.equals(Constants.LOCAL)) {
+      return new ImportExecutor(false)
+          .shuffleItems(StoreType.WINDOWS_FILE_SYSTEM, cmdLineOptions.getShuffle());
+    } else if (storeType.equals(Constants.AZURE_BLOB)) {
+      return new ImportExecutor(false)
+          .shuffleItems(StoreType.AZURE_BLOB, cmdLineOptions.getShuffle());
+    }
+    throw new Exception("Unsupported store type for shuffle.");
+  }
+
+  /** @return false when partitions failed to sort. */
+  static boolean sortData(CmdLineOptions cmdLineOptions) throws Exception {
+    String storeType = cmdLineOptions.getStoreType().toLowerCase();
+    if (storeType.equals(Constants.ADL)) {
+      return new ImportExecutor(false).sortPartitions(StoreType.ADL, cmdLineOptions.getSort());
+    } else if (storeType.equals(Constants.LOCAL)) {
+      return new ImportExecutor(false)
+          .sortPartitions(StoreType.WINDOWS_FILE_SYSTEM, cmdLineOptions.getSort());
+    }
+    throw new Exception("Unsupported store type for sort.");
+  }
+
   static void generateTestData(CmdLineOptions cmdLineOptions) throws IOException {
     if (cmdLineOptions.getTestData().toLowerCase().equals(Constants.ADL)) {
 
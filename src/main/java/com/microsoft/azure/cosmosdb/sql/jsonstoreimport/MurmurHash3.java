@@ -0,0 +1,150 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport;
+
+/**
+ * MurmurHash3 as used by Cosmos DB for effective partition keys, x86_32 for hash version 1 and
+ * x64_128 for hash version 2. Both hash a prefix of a reused byte array without allocating.
+ */
+final class MurmurHash3 {
+
+  private static final int C1_32 = 0xcc9e2d51;
+  private static final int C2_32 = 0x1b873593;
+  private static final long C1_128 = 0x87c37b91114253d5L;
+  private static final long C2_128 = 0x4cf5ad432745937fL;
+
+  private MurmurHash3() {}
+
+  static int hash32(byte[] data, int length, int seed) {
+    int h1 = seed;
+    int blocks = length & ~3;
+    for (int i = 0; i < blocks; i += 4) {
+      int k1 = getIntLittleEndian(data, i);
+      k1 *= C1_32;
+      k1 = Integer.rotateLeft(k1, 15);
+      k1 *= C2_32;
+      h1 ^= k1;
+      h1 = Integer.rotateLeft(h1, 13);
+      h1 = h1 * 5 + 0xe6546b64;
+    }
+    int k1 = 0;
+    switch (length & 3) {
+      case 3:
+        k1 ^= (data[blocks + 2] & 0xff) << 16;
+        // fall through
+      case 2:
+        k1 ^= (data[blocks + 1] & 0xff) << 8;
+        // fall through
+      case 1:
+        k1 ^= data[blocks] & 0xff;
+        k1 *= C1_32;
+        k1 = Integer.rotateLeft(k1, 15);
+        k1 *= C2_32;
+        h1 ^= k1;
+        // fall through
+      default:
+        break;
+    }
+    h1 ^= length;
+    h1 ^= h1 >>> 16;
+    h1 *= 0x85ebca6b;
+    h1 ^= h1 >>> 13;
+    h1 *= 0xc2b2ae35;
+    h1 ^= h1 >>> 16;
+    return h1;
+  }
+
+  /** Writes the low and high 64 bits of the hash to result[0] and result[1]. */
+  static void hash128(byte[] data, int length, long seed, long[] result) {
+    long h1 = seed;
+    long h2 = seed;
+    int blocks = length & ~15;
+    for (int i = 0; i < blocks; i += 16) {
+      long k1 = getLongLittleEndian(data, i);
+      long k2 = getLongLittleEndian(data, i + 8);
+      k1 *= C1_128;
+      k1 = Long.rotateLeft(k1, 31);
+      k1 *= C2_128;
+      h1 ^= k1;
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = h1 * 5 + 0x52dce729;
+      k2 *= C2_128;
+      k2 = Long.rotateLeft(k2, 33);
+      k2 *= C1_128;
+      h2 ^= k2;
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+    long k1 = 0;
+    long k2 = 0;
+    int tail = length & 15;
+    for (int i = tail - 1; i >= 8; i--) {
+      k2 ^= (data[blocks + i] & 0xffL) << ((i - 8) * 8);
+    }
+    if (tail > 8) {
+      k2 *= C2_128;
+      k2 = Long.rotateLeft(k2, 33);
+      k2 *= C1_128;
+      h2 ^= k2;
+    }
+    for (int i = Math.min(tail, 8) - 1; i >= 0; i--) {
+      k1 ^= (data[blocks + i] & 0xffL) << (i * 8);
+    }
+    if (tail > 0) {
+      k1 *= C1_128;
+      k1 = Long.rotateLeft(k1, 31);
+      k1 *= C2_128;
+      h1 ^= k1;
+    }
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix64(h1);
+    h2 = fmix64(h2);
+    h1 += h2;
+    h2 += h1;
+    result[0] = h1;
+    result[1] = h2;
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  private static int getIntLittleEndian(byte[] data, int offset) {
+    return (data[offset] & 0xff)
+        | (data[offset + 1] & 0xff) << 8
+        | (data[offset + 2] & 0xff) << 16
+        | (data[offset + 3] & 0xff) << 24;
+  }
+
+  private static long getLongLittleEndian(byte[] data, int offset) {
+    return (getIntLittleEndian(data, offset) & 0xffffffffL)
+        | (long) getIntLittleEndian(data, offset + 4) << 32;
+  }
+}
@@ -0,0 +1,57 @@
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+public class NullPartitionKeyComponent implements IPartitionKeyComponent {
+    public static final NullPartitionKeyComponent VALUE = new NullPartitionKeyComponent();
+
+    @Override
+    public int CompareTo(IPartitionKeyComponent other) {
+        if (other.getClass() != NullPartitionKeyComponent.class) {
+            throw new IllegalArgumentException("other");
+        }
+
+        return 0;
+    }
+
+    @Override
+    public int GetTypeOrdinal() {
+        return PartitionKeyComponentType.NULL.type;
+    }
+
+    @Override
+    public void JsonEncode(JsonGenerator writer) {
+        try {
+            writer.writeNull();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void WriteForHashing(OutputStream outputStream) {
+        WriteForBinaryEncoding(outputStream);
+    }
+
+    @Override
+    public void WriteForBinaryEncoding(OutputStream outputStream) {
+        try {
+            outputStream.write(PartitionKeyComponentType.NULL.type);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void WriteForHashingV2(OutputStream binaryWriter) {
+        WriteForBinaryEncoding(binaryWriter);
+    }
+
+    @Override
+    public IPartitionKeyComponent Truncate() {
+        return this;
+    }
+}
@@ -0,0 +1,108 @@
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+public class NumberPartitionKeyComponent implements IPartitionKeyComponent {
+    private final double value;
+
+    public NumberPartitionKeyComponent(double value) {
+        this.value = value;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public int CompareTo(IPartitionKeyComponent other) {
+        if (other.getClass() != NumberPartitionKeyComponent.class) {
+            throw new IllegalArgumentException("other");
+        }
+
+        return Double.compare(this.value, ((NumberPartitionKeyComponent) other).value);
+    }
+
+    @Override
+    public int GetTypeOrdinal() {
+        return PartitionKeyComponentType.NUMBER.type;
+    }
+
+    @Override
+    public void JsonEncode(JsonGenerator writer) {
+        try {
+            writer.writeNumber(this.value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void WriteForHashing(OutputStream outputStream) {
+        writeTypeAndDouble(outputStream);
+    }
+
+    @Override
+    public void WriteForBinaryEncoding(OutputStream outputStream) {
+        try {
+            outputStream.write(PartitionKeyComponentType.NUMBER.type);
+            long payload = encodeDoubleAsUInt64(this.value);
+
+            // First chunk carries 8 bits of payload
+            outputStream.write((int) (payload >>> 56));
+            payload <<= 8;
+
+            // Remaining chunks carry 7 bits followed by a 1 bit, except the last one ending in 0
+            int byteToWrite = 0;
+            boolean firstIteration = true;
+            do {
+                if (!firstIteration) {
+                    outputStream.write(byteToWrite);
+                } else {
+                    firstIteration = false;
+                }
+
+                byteToWrite = (int) (payload >>> 56) | 0x01;
+                payload <<= 7;
+            } while (payload != 0);
+
+            outputStream.write(byteToWrite & 0xFE);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void WriteForHashingV2(OutputStream binaryWriter) {
+        writeTypeAndDouble(binaryWriter);
+    }
+
+    @Override
+    public IPartitionKeyComponent Truncate() {
+        return this;
+    }
+
+    private void writeTypeAndDouble(OutputStream outputStream) {
+        try {
+            outputStream.write(PartitionKeyComponentType.NUMBER.type);
+            long bits = Double.doubleToLongBits(this.value);
+            for (int shift = 0; shift < 64; shift += 8) {
+                outputStream.write((int) (bits >>> shift));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Maps doubles to unsigned longs which sort in the same order, negative values are negated as
+    // two's complement like the Cosmos DB SDKs do
+    private static long encodeDoubleAsUInt64(double value) {
+        long valueInUInt64 = Double.doubleToRawLongBits(value);
+        long mask = 0x8000000000000000L;
+        return Long.compareUnsigned(valueInUInt64, mask) < 0
+                ? valueInUInt64 ^ mask
+                : ~valueInUInt64 + 1;
+    }
+}
@@ -19,6 +19,7 @@
 
 package com.microsoft.azure.cosmosdb.sql.jsonstoreimport;
 
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonDocBatchReader;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreReader;
 import java.util.Stack;
 
@@ -39,7 +40,11 @@ class ReadDocumentGroupRunnable implements Runnable {
       if (jsonStoreEntity == null) return;
       JsonStoreReader jsonStoreReader =
           new JsonStoreReader(jsonStoreEntity.getJsonStoreEntityInstance());
-      stackDocs.add(new DocumentGroup(jsonStoreEntity, jsonStoreReader.getJsonDocs()));
+      JsonDocBatchReader jsonDocBatches =
+          jsonStoreReader.getJsonDocBatches(Settings.getIngestionBatchSize());
+      // Pull the first batch so ingestion of this entity can start right away
+      jsonDocBatches.hasNext();
+      stackDocs.add(new DocumentGroup(jsonStoreEntity, jsonDocBatches));
     } catch (Exception e) {
       e.printStackTrace();
     }
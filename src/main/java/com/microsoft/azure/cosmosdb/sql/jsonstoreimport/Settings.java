@@ -19,18 +19,36 @@
 
 package com.microsoft.azure.cosmosdb.sql.jsonstoreimport;
 
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.CompressedInputStreams.Compression;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.IdGenerator;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.SourceFormat;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.transform.DocumentTransform;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
-import org.json.JSONObject;
 
 public class Settings {
 
   // Azure Blob Settings
   private static String azureBlobConnectionString;
+  // Remote source streaming settings
+  private static int readAheadChunkSizeInKb;
+  private static int readAheadChunkCount;
+  private static int rangedReadMinFileSizeInMb;
+  private static int rangedReadChunkSizeInMb;
+  private static int rangedReadConcurrency;
+  private static String sourceFileCacheFolder;
+  private static int sourceFileCacheMaxSizeInMb;
+  private static Compression sourceCompression;
+  private static SourceFormat sourceFormat;
+  private static int columnarReaderThreads;
+  private static int columnarMaxBytesInFlightInMb;
 
   // ADL Settings
   private static String AdlAccountFQDN;
@@ -38,6 +56,14 @@ public class Settings {
   private static String AdlAuthTokenEndpoint;
   private static String AdlClientKey;
   private static int maxFileEntriesToRetrieve;
+  private static boolean listingRecursive;
+  private static int listingThreads;
+  private static int listingQueueSize;
+  private static int splitFileSizeInMb;
+  private static String listingNamePrefix;
+  private static String listingNameSuffix;
+  private static Instant listingModifiedAfter;
+  private static Instant listingModifiedBefore;
   private static String adlShuffleFolder;
   private static String adlSortedDataFolder;
   private static String adlSourceFolder;
@@ -53,14 +79,46 @@ public class Settings {
   private static int cosmosDbImportMiniBatchMaxSizeInBytes;
   private static int cosmosDbDataCollectionConnectionPoolSize;
   private static int cosmosDbBulkImportLibBatchSize;
+  private static boolean routeByPartitionKeyRange;
+  private static boolean screenSortedData;
+  private static int routingBatchSize;
+  private static int routingMaxBatchAgeInSeconds;
+  private static int routingMaxBufferedDocuments;
+  private static int partitionSplitRetryAttempts;
+  private static int inFlightBatchesPerFile;
+  private static boolean adaptiveBatchSizing;
+  private static int adaptiveBatchMinSize;
+  private static int adaptiveBatchMaxSize;
+  private static int adaptiveBatchIncrease;
+  private static int adaptiveBatchTargetRuPercent;
   // Settings for mapping keys between input json data and cosmos db document
   private static String idField;
   private static boolean useGuidForId;
   private static boolean UseGuidForPk;
+  private static IdGenerator idGenerator;
+  private static List<String> idNameFields;
+  private static UUID idNamespace;
+  private static DocumentTransform documentTransform;
+  private static int transformThreads;
+  private static int transformShardSize;
+  private static boolean validateDocuments;
+  private static int maxDocumentSizeInBytes;
+  private static String rejectOutputFolder;
+  private static String rejectOutputBlobContainer;
   // Scale test settings
   private static int jsonDocsBatchCount;
   private static String runTag;
   private static int preCookedDataQueueSize;
+  // Local file reader settings
+  private static int localFileReaderThreads;
+  private static int localFileSegmentSizeInMb;
+  private static int localFileMaxBytesInFlightInMb;
+  private static int localIngestionReaderThreads;
+  private static int localIngestionWriterThreads;
+  private static int localIngestionQueuedBatches;
+  private static int localIngestionMaxQueuedMb;
+  private static int prefetchMinBufferSizeInMb;
+  private static int prefetchMaxBufferSizeInMb;
 
   // USql shuffle settings
   private static String adlaAccountName;
@@ -73,6 +131,24 @@ public class Settings {
   private static int numberOfUsqlJobs;
   private static int numberOfSourceDataFilesToProcess;
   private static int numberOfCosmosDbPartitions;
+  // Local shuffle settings
+  private static boolean partitionKeyHashV2;
+  private static boolean shuffleUseCollectionRanges;
+  private static String shuffleOutputFolder;
+  private static int shuffleFileSizeInMb;
+  private static int shuffleWriteBufferSizeInKb;
+  private static int shuffleReaderThreads;
+  private static int shuffleWorkerCount;
+  private static int shuffleWorkerIndex;
+  private static boolean uploadShuffleOutput;
+  // Local sort settings
+  private static String sortOutputFolder;
+  private static String sortSpillFolder;
+  private static int sortRunSizeInMb;
+  private static int sortMergeFanIn;
+  private static int sortedFileSizeInMb;
+  private static int sortThreads;
+  private static boolean uploadSortOutput;
   // Partitions processing settings
   private static int partitionsLimitForWorker;
   private static boolean mergePartitions;
@@ -141,6 +217,70 @@ public class Settings {
     return numberOfCosmosDbPartitions;
   }
 
+  public static boolean getPartitionKeyHashV2() {
+    return partitionKeyHashV2;
+  }
+
+  public static boolean getShuffleUseCollectionRanges() {
+    return shuffleUseCollectionRanges;
+  }
+
+  public static String getShuffleOutputFolder() {
+    return shuffleOutputFolder;
+  }
+
+  public static int getShuffleFileSizeInMb() {
+    return shuffleFileSizeInMb;
+  }
+
+  public static int getShuffleWriteBufferSizeInKb() {
+    return shuffleWriteBufferSizeInKb;
+  }
+
+  public static int getShuffleReaderThreads() {
+    return shuffleReaderThreads;
+  }
+
+  public static int getShuffleWorkerCount() {
+    return shuffleWorkerCount;
+  }
+
+  public static int getShuffleWorkerIndex() {
+    return shuffleWorkerIndex;
+  }
+
+  public static boolean getUploadShuffleOutput() {
+    return uploadShuffleOutput;
+  }
+
+  public static String getSortOutputFolder() {
+    return sortOutputFolder;
+  }
+
+  public static String getSortSpillFolder() {
+    return sortSpillFolder;
+  }
+
+  public static int getSortRunSizeInMb() {
+    return sortRunSizeInMb;
+  }
+
+  public static int getSortMergeFanIn() {
+    return sortMergeFanIn;
+  }
+
+  public static int getSortedFileSizeInMb() {
+    return sortedFileSizeInMb;
+  }
+
+  public static int getSortThreads() {
+    return sortThreads;
+  }
+
+  public static boolean getUploadSortOutput() {
+    return uploadSortOutput;
+  }
+
   public static int getPartitionsLimitForWorker() {
     return partitionsLimitForWorker;
   }
@@ -173,10 +313,86 @@ public class Settings {
     return maxFileEntriesToRetrieve;
   }
 
+  public static boolean getListingRecursive() {
+    return listingRecursive;
+  }
+
+  public static int getListingThreads() {
+    return listingThreads;
+  }
+
+  public static int getListingQueueSize() {
+    return listingQueueSize;
+  }
+
+  public static int getSplitFileSizeInMb() {
+    return splitFileSizeInMb;
+  }
+
+  public static String getListingNamePrefix() {
+    return listingNamePrefix;
+  }
+
+  public static String getListingNameSuffix() {
+    return listingNameSuffix;
+  }
+
+  public static Instant getListingModifiedAfter() {
+    return listingModifiedAfter;
+  }
+
+  public static Instant getListingModifiedBefore() {
+    return listingModifiedBefore;
+  }
+
   public static String getAzureBlobConnectionString() {
     return azureBlobConnectionString;
   }
 
+  public static int getReadAheadChunkSizeInKb() {
+    return readAheadChunkSizeInKb;
+  }
+
+  public static int getReadAheadChunkCount() {
+    return readAheadChunkCount;
+  }
+
+  public static int getRangedReadMinFileSizeInMb() {
+    return rangedReadMinFileSizeInMb;
+  }
+
+  public static int getRangedReadChunkSizeInMb() {
+    return rangedReadChunkSizeInMb;
+  }
+
+  public static int getRangedReadConcurrency() {
+    return rangedReadConcurrency;
+  }
+
+  public static String getSourceFileCacheFolder() {
+    return sourceFileCacheFolder;
+  }
+
+  public static int getSourceFileCacheMaxSizeInMb() {
+    return sourceFileCacheMaxSizeInMb;
+  }
+
+  public static Compression getSourceCompression() {
+    return sourceCompression;
+  }
+
+  public static SourceFormat getSourceFormat() {
+    return sourceFormat;
+  }
+
+  public static int getColumnarReaderThreads() {
+    return columnarReaderThreads;
+  }
+
+  public static int getColumnarMaxBytesInFlightInMb() {
+    return columnarMaxBytesInFlightInMb;
+  }
+
   public static int getCosmosDbDataCollectionConnectionPoolSize() {
     return cosmosDbDataCollectionConnectionPoolSize;
   }
@@ -185,24 +401,154 @@ public class Settings {
     return cosmosDbBulkImportLibBatchSize;
   }
 
-  public static JSONObject applyIdAndPartitionKeySettings(String line) {
-    JSONObject object = new JSONObject(line);
-    if (Settings.idField != null && !Settings.idField.isEmpty()) {
-      object.put("id", object.get(Settings.idField));
-    }
-    if (Settings.cosmosDbDataCollectionPkValue != null
-        && !Settings.cosmosDbDataCollectionPkValue.isEmpty()) {
-      object.put(
-          Settings.cosmosDbDataCollectionPkValue,
-          object.get(Settings.cosmosDbDataCollectionPkValue));
+  /**
+   * Number of documents streamed from a store entity and handed to the bulk importer at once.
+   */
+  public static int getIngestionBatchSize() {
+    if (cosmosDbBulkImportLibBatchSize > 0) {
+      return cosmosDbBulkImportLibBatchSize;
     }
-    if (Settings.useGuidForId) {
-      object.put("id", UUID.randomUUID().toString());
-    }
-    if (Settings.UseGuidForPk) {
-      object.put(Settings.cosmosDbDataCollectionPkValue, UUID.randomUUID().toString());
-    }
-    return object;
+    return jsonDocsBatchCount;
+  }
+
+  public static boolean getScreenSortedData() {
+    return screenSortedData;
+  }
+
+  public static boolean getRouteByPartitionKeyRange() {
+    return routeByPartitionKeyRange;
+  }
+
+  public static int getRoutingBatchSize() {
+    return routingBatchSize;
+  }
+
+  public static int getRoutingMaxBatchAgeInSeconds() {
+    return routingMaxBatchAgeInSeconds;
+  }
+
+  public static int getRoutingMaxBufferedDocuments() {
+    return routingMaxBufferedDocuments;
+  }
+
+  public static int getPartitionSplitRetryAttempts() {
+    return partitionSplitRetryAttempts;
+  }
+
+  public static int getInFlightBatchesPerFile() {
+    return inFlightBatchesPerFile;
+  }
+
+  public static boolean getAdaptiveBatchSizing() {
+    return adaptiveBatchSizing;
+  }
+
+  public static int getAdaptiveBatchMinSize() {
+    return adaptiveBatchMinSize;
+  }
+
+  public static int getAdaptiveBatchMaxSize() {
+    return adaptiveBatchMaxSize;
+  }
+
+  public static int getAdaptiveBatchIncrease() {
+    return adaptiveBatchIncrease;
+  }
+
+  public static int getAdaptiveBatchTargetRuPercent() {
+    return adaptiveBatchTargetRuPercent;
+  }
+
+  public static String getIdField() {
+    return idField;
+  }
+
+  public static boolean getUseGuidForId() {
+    return useGuidForId;
+  }
+
+  public static boolean getUseGuidForPk() {
+    return UseGuidForPk;
+  }
+
+  public static IdGenerator getIdGenerator() {
+    return idGenerator;
+  }
+
+  /** Fields whose values name the document for the NAME generator, empty for the whole document. */
+  public static List<String> getIdNameFields() {
+    return idNameFields;
+  }
+
+  public static UUID getIdNamespace() {
+    return idNamespace;
+  }
+
+  /** Compiled transform settings, null when documents are not transformed. */
+  public static DocumentTransform getDocumentTransform() {
+    return documentTransform;
+  }
+
+  public static int getTransformThreads() {
+    return transformThreads;
+  }
+
+  /** Documents a transform task handles before the rest of a batch is split off. */
+  public static int getTransformShardSize() {
+    return transformShardSize;
+  }
+
+  public static boolean getValidateDocuments() {
+    return validateDocuments;
+  }
+
+  public static int getMaxDocumentSizeInBytes() {
+    return maxDocumentSizeInBytes;
+  }
+
+  public static String getRejectOutputFolder() {
+    return rejectOutputFolder;
+  }
+
+  /** Container the reject files are uploaded to, null to keep them local only. */
+  public static String getRejectOutputBlobContainer() {
+    return rejectOutputBlobContainer;
+  }
+
+  public static int getLocalFileReaderThreads() {
+    return localFileReaderThreads;
+  }
+
+  public static int getLocalFileSegmentSizeInMb() {
+    return localFileSegmentSizeInMb;
+  }
+
+  public static int getLocalFileMaxBytesInFlightInMb() {
+    return localFileMaxBytesInFlightInMb;
+  }
+
+  public static int getLocalIngestionReaderThreads() {
+    return localIngestionReaderThreads;
+  }
+
+  public static int getLocalIngestionWriterThreads() {
+    return localIngestionWriterThreads;
+  }
+
+  public static int getLocalIngestionQueuedBatches() {
+    return localIngestionQueuedBatches;
+  }
+
+  public static int getLocalIngestionMaxQueuedMb() {
+    return localIngestionMaxQueuedMb;
+  }
+
+  public static int getPrefetchMinBufferSizeInMb() {
+    return prefetchMinBufferSizeInMb;
+  }
+
+  public static int getPrefetchMaxBufferSizeInMb() {
+    return prefetchMaxBufferSizeInMb;
   }
 
   public static int getJsonDocsBatchCount() {
@@ -249,7 +595,7 @@ public class Settings {
     return cosmosDbDataCollectionThroughput;
   }
 
-  static String getCosmosDbDataCollectionPkValue() {
+  public static String getCosmosDbDataCollectionPkValue() {
     return cosmosDbDataCollectionPkValue;
   }
 
@@ -278,10 +624,40 @@ public class Settings {
     }
   }
 
-  private static void registerSettingValues(Properties settings) {
+  private static void registerSettingValues(Properties settings) throws IOException {
     // Azure Blob Settings
     Settings.azureBlobConnectionString = settings.getProperty("azureBlobConnectionString");
 
+    // Remote source streaming settings
+    Settings.readAheadChunkSizeInKb =
+        parseOrDefault(settings.getProperty("readAheadChunkSizeInKb"), 4096);
+    Settings.readAheadChunkCount = parseOrDefault(settings.getProperty("readAheadChunkCount"), 4);
+    Settings.rangedReadMinFileSizeInMb =
+        parseOrDefault(settings.getProperty("rangedReadMinFileSizeInMb"), 64);
+    Settings.rangedReadChunkSizeInMb =
+        parseOrDefault(settings.getProperty("rangedReadChunkSizeInMb"), 8);
+    Settings.rangedReadConcurrency =
+        parseOrDefault(settings.getProperty("rangedReadConcurrency"), 4);
+    Settings.sourceFileCacheFolder = emptyToNull(settings.getProperty("sourceFileCacheFolder"));
+    Settings.sourceFileCacheMaxSizeInMb =
+        parseOrDefault(settings.getProperty("sourceFileCacheMaxSizeInMb"), 102400);
+    String sourceCompression = settings.getProperty("sourceCompression");
+    Settings.sourceCompression =
+        sourceCompression == null
+            ? Compression.AUTO
+            : Compression.valueOf(sourceCompression.trim().toUpperCase());
+    String sourceFormat = settings.getProperty("sourceFormat");
+    Settings.sourceFormat =
+        sourceFormat == null
+            ? SourceFormat.AUTO
+            : SourceFormat.valueOf(sourceFormat.trim().toUpperCase());
+    Settings.columnarReaderThreads =
+        parseOrDefault(
+            settings.getProperty("columnarReaderThreads"),
+            Runtime.getRuntime().availableProcessors());
+    Settings.columnarMaxBytesInFlightInMb =
+        parseOrDefault(settings.getProperty("columnarMaxBytesInFlightInMb"), 512);
+
     // ADL Settings
     Settings.AdlAccountFQDN = settings.getProperty("adlAccountFQDN");
     Settings.AdlClientId = settings.getProperty("adlClientId");
@@ -289,6 +665,18 @@ public class Settings {
     Settings.AdlClientKey = settings.getProperty("adlClientKey");
     Settings.maxFileEntriesToRetrieve =
         parseOrDefault(settings.getProperty("maxFileEntriesToRetrieve"), 100000);
+    Settings.listingRecursive = Boolean.parseBoolean(settings.getProperty("listingRecursive"));
+    Settings.listingThreads = parseOrDefault(settings.getProperty("listingThreads"), 8);
+    Settings.listingQueueSize = parseOrDefault(settings.getProperty("listingQueueSize"), 10000);
+    Settings.splitFileSizeInMb = parseOrDefault(settings.getProperty("splitFileSizeInMb"), 1024);
+    Settings.listingNamePrefix = emptyToNull(settings.getProperty("listingNamePrefix"));
+    Settings.listingNameSuffix = emptyToNull(settings.getProperty("listingNameSuffix"));
+    String listingModifiedAfter = emptyToNull(settings.getProperty("listingModifiedAfter"));
+    Settings.listingModifiedAfter =
+        listingModifiedAfter == null ? null : Instant.parse(listingModifiedAfter);
+    String listingModifiedBefore = emptyToNull(settings.getProperty("listingModifiedBefore"));
+    Settings.listingModifiedBefore =
+        listingModifiedBefore == null ? null : Instant.parse(listingModifiedBefore);
     Settings.adlShuffleFolder = settings.getProperty("adlShuffleFolder");
     Settings.adlSortedDataFolder = settings.getProperty("adlSortedDataFolder");
     Settings.adlSourceFolder = settings.getProperty("adlSourceFolder");
@@ -315,10 +703,75 @@ public class Settings {
 
     Settings.cosmosDbBulkImportLibBatchSize =
         parseOrDefault(settings.getProperty("cosmosDbBulkImportLibBatchSize"), -1);
+    Settings.screenSortedData = Boolean.parseBoolean(settings.getProperty("screenSortedData"));
+    Settings.routeByPartitionKeyRange =
+        Boolean.parseBoolean(settings.getProperty("routeByPartitionKeyRange"));
+    Settings.routingBatchSize = parseOrDefault(settings.getProperty("routingBatchSize"), -1);
+    Settings.routingMaxBatchAgeInSeconds =
+        parseOrDefault(settings.getProperty("routingMaxBatchAgeInSeconds"), 30);
+    Settings.routingMaxBufferedDocuments =
+        parseOrDefault(settings.getProperty("routingMaxBufferedDocuments"), 200000);
+    Settings.partitionSplitRetryAttempts =
+        parseOrDefault(settings.getProperty("partitionSplitRetryAttempts"), 3);
+    Settings.inFlightBatchesPerFile =
+        parseOrDefault(settings.getProperty("inFlightBatchesPerFile"), 2);
+    Settings.adaptiveBatchSizing =
+        Boolean.parseBoolean(settings.getProperty("adaptiveBatchSizing"));
+    Settings.adaptiveBatchMinSize =
+        parseOrDefault(settings.getProperty("adaptiveBatchMinSize"), 1000);
+    Settings.adaptiveBatchMaxSize =
+        parseOrDefault(settings.getProperty("adaptiveBatchMaxSize"), 100000);
+    Settings.adaptiveBatchIncrease =
+        parseOrDefault(settings.getProperty("adaptiveBatchIncrease"), 1000);
+    Settings.adaptiveBatchTargetRuPercent =
+        parseOrDefault(settings.getProperty("adaptiveBatchTargetRuPercent"), 90);
 
     Settings.idField = settings.getProperty("idField");
     Settings.useGuidForId = Boolean.parseBoolean(settings.getProperty("useGuidForId"));
     Settings.UseGuidForPk = Boolean.parseBoolean(settings.getProperty("useGuidForPk"));
+    String idGenerator = emptyToNull(settings.getProperty("idGenerator"));
+    Settings.idGenerator =
+        idGenerator == null
+            ? IdGenerator.RANDOM
+            : IdGenerator.valueOf(idGenerator.trim().toUpperCase());
+    Settings.idNameFields = new ArrayList<>();
+    String idNameFields = emptyToNull(settings.getProperty("idNameFields"));
+    if (idNameFields != null) {
+      for (String idNameField : idNameFields.split(",")) {
+        Settings.idNameFields.add(idNameField.trim());
+      }
+    }
+    String idNamespace = emptyToNull(settings.getProperty("idNamespace"));
+    Settings.idNamespace =
+        idNamespace == null
+            ? UUID.fromString("6ba7b811-9dad-11d1-80b4-00c04fd430c8")
+            : UUID.fromString(idNamespace.trim());
+
+    // Transform settings, read from transformSpecFile when it is set
+    Properties transformSpec = settings;
+    String transformSpecFile = emptyToNull(settings.getProperty("transformSpecFile"));
+    if (transformSpecFile != null) {
+      transformSpec = new Properties();
+      try (InputStream transformSpecStream = new FileInputStream(transformSpecFile)) {
+        transformSpec.load(transformSpecStream);
+      }
+    }
+    Settings.documentTransform = DocumentTransform.compile(transformSpec);
+    Settings.transformThreads =
+        parseOrDefault(
+            settings.getProperty("transformThreads"), Runtime.getRuntime().availableProcessors());
+    Settings.transformShardSize = parseOrDefault(settings.getProperty("transformShardSize"), 500);
+
+    // Screening settings
+    String validateDocuments = emptyToNull(settings.getProperty("validateDocuments"));
+    Settings.validateDocuments =
+        validateDocuments == null || Boolean.parseBoolean(validateDocuments);
+    Settings.maxDocumentSizeInBytes =
+        parseOrDefault(settings.getProperty("maxDocumentSizeInBytes"), 2000000);
+    String rejectOutputFolder = emptyToNull(settings.getProperty("rejectOutputFolder"));
+    Settings.rejectOutputFolder = rejectOutputFolder == null ? "rejects" : rejectOutputFolder;
+    Settings.rejectOutputBlobContainer =
+        emptyToNull(settings.getProperty("rejectOutputBlobContainer"));
 
     // Scale test settings
     Settings.jsonDocsBatchCount =
@@ -327,6 +780,28 @@ public class Settings {
     Settings.preCookedDataQueueSize =
         parseOrDefault(settings.getProperty("preCookedDataQueueSize"), 3);
 
+    // Local file reader settings
+    Settings.localFileReaderThreads =
+        parseOrDefault(
+            settings.getProperty("localFileReaderThreads"),
+            Runtime.getRuntime().availableProcessors());
+    Settings.localFileSegmentSizeInMb =
+        parseOrDefault(settings.getProperty("localFileSegmentSizeInMb"), 64);
+    Settings.localFileMaxBytesInFlightInMb =
+        parseOrDefault(settings.getProperty("localFileMaxBytesInFlightInMb"), 512);
+    Settings.localIngestionReaderThreads =
+        parseOrDefault(settings.getProperty("localIngestionReaderThreads"), 4);
+    Settings.localIngestionWriterThreads =
+        parseOrDefault(settings.getProperty("localIngestionWriterThreads"), 2);
+    Settings.localIngestionQueuedBatches =
+        parseOrDefault(settings.getProperty("localIngestionQueuedBatches"), 4);
+    Settings.localIngestionMaxQueuedMb =
+        parseOrDefault(settings.getProperty("localIngestionMaxQueuedMb"), 512);
+    Settings.prefetchMinBufferSizeInMb =
+        parseOrDefault(settings.getProperty("prefetchMinBufferSizeInMb"), 16);
+    Settings.prefetchMaxBufferSizeInMb =
+        parseOrDefault(settings.getProperty("prefetchMaxBufferSizeInMb"), 512);
+
     // Partitions processing settings
     Settings.partitionsLimitForWorker =
         parseOrDefault(settings.getProperty("partitionsLimitForWorker"), -1);
@@ -350,12 +825,47 @@ public class Settings {
         parseOrDefault(settings.getProperty("numberOfSourceDataFilesToProcess"), -1);
     Settings.numberOfCosmosDbPartitions =
         parseOrDefault(settings.getProperty("numberOfCosmosDbPartitions"), -1);
+
+    // Local shuffle settings
+    Settings.partitionKeyHashV2 = Boolean.parseBoolean(settings.getProperty("partitionKeyHashV2"));
+    Settings.shuffleUseCollectionRanges =
+        Boolean.parseBoolean(settings.getProperty("shuffleUseCollectionRanges"));
+    String shuffleOutputFolder = emptyToNull(settings.getProperty("shuffleOutputFolder"));
+    Settings.shuffleOutputFolder = shuffleOutputFolder == null ? "shuffled" : shuffleOutputFolder;
+    Settings.shuffleFileSizeInMb = parseOrDefault(settings.getProperty("shuffleFileSizeInMb"), 256);
+    Settings.shuffleWriteBufferSizeInKb =
+        parseOrDefault(settings.getProperty("shuffleWriteBufferSizeInKb"), 256);
+    Settings.shuffleReaderThreads =
+        parseOrDefault(
+            settings.getProperty("shuffleReaderThreads"),
+            Runtime.getRuntime().availableProcessors());
+    Settings.shuffleWorkerCount = parseOrDefault(settings.getProperty("shuffleWorkerCount"), 1);
+    Settings.shuffleWorkerIndex = parseOrDefault(settings.getProperty("shuffleWorkerIndex"), 0);
+    Settings.uploadShuffleOutput =
+        Boolean.parseBoolean(settings.getProperty("uploadShuffleOutput"));
+
+    // Local sort settings
+    String sortOutputFolder = emptyToNull(settings.getProperty("sortOutputFolder"));
+    Settings.sortOutputFolder = sortOutputFolder == null ? "sorted" : sortOutputFolder;
+    String sortSpillFolder = emptyToNull(settings.getProperty("sortSpillFolder"));
+    Settings.sortSpillFolder =
+        sortSpillFolder == null ? System.getProperty("java.io.tmpdir") : sortSpillFolder;
+    Settings.sortRunSizeInMb = parseOrDefault(settings.getProperty("sortRunSizeInMb"), 256);
+    Settings.sortMergeFanIn = parseOrDefault(settings.getProperty("sortMergeFanIn"), 64);
+    Settings.sortedFileSizeInMb = parseOrDefault(settings.getProperty("sortedFileSizeInMb"), 500);
+    Settings.sortThreads = parseOrDefault(settings.getProperty("sortThreads"), 4);
+    Settings.uploadSortOutput = Boolean.parseBoolean(settings.getProperty("uploadSortOutput"));
+
     Settings.estimatedNumberOfFilesInPartition =
         parseOrDefault(settings.getProperty("estimatedNumberOfFilesInPartition"), -1);
     Settings.jsonDocColumnIndexInCsv =
         parseOrDefault(settings.getProperty("jsonDocColumnIndexInCsv"), -1);
   }
 
+  private static String emptyToNull(String value) {
+    return value == null || value.trim().isEmpty() ? null : value.trim();
+  }
+
   private static int parseOrDefault(String value, int defaultValue) {
     if (value == null) {
       return defaultValue;
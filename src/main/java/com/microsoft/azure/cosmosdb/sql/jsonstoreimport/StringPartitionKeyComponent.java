@@ -0,0 +1,103 @@
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+public class StringPartitionKeyComponent implements IPartitionKeyComponent {
+    // Strings are hashed and encoded up to this many chars and bytes
+    public static final int MAX_STRING_CHARS = 100;
+    public static final int MAX_STRING_BYTES_TO_APPEND = 100;
+
+    private final String value;
+    private final byte[] utf8Value;
+
+    public StringPartitionKeyComponent(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value");
+        }
+
+        this.value = value;
+        this.utf8Value = value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public int CompareTo(IPartitionKeyComponent other) {
+        if (other.getClass() != StringPartitionKeyComponent.class) {
+            throw new IllegalArgumentException("other");
+        }
+
+        return this.value.compareTo(((StringPartitionKeyComponent) other).value);
+    }
+
+    @Override
+    public int GetTypeOrdinal() {
+        return PartitionKeyComponentType.STRING.type;
+    }
+
+    @Override
+    public void JsonEncode(JsonGenerator writer) {
+        try {
+            writer.writeString(this.value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void WriteForHashing(OutputStream outputStream) {
+        try {
+            outputStream.write(PartitionKeyComponentType.STRING.type);
+            outputStream.write(this.utf8Value);
+            outputStream.write(0x00);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void WriteForBinaryEncoding(OutputStream outputStream) {
+        try {
+            outputStream.write(PartitionKeyComponentType.STRING.type);
+            boolean shortString = this.utf8Value.length <= MAX_STRING_BYTES_TO_APPEND;
+            int length = shortString ? this.utf8Value.length : MAX_STRING_BYTES_TO_APPEND + 1;
+            for (int index = 0; index < length; index++) {
+                // Shifted by one so that zero can terminate the string
+                int charByte = this.utf8Value[index] & 0xFF;
+                outputStream.write(charByte < 0xFF ? charByte + 1 : charByte);
+            }
+
+            if (shortString) {
+                outputStream.write(0x00);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void WriteForHashingV2(OutputStream binaryWriter) {
+        try {
+            binaryWriter.write(PartitionKeyComponentType.STRING.type);
+            binaryWriter.write(this.utf8Value);
+            binaryWriter.write(0xFF);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public IPartitionKeyComponent Truncate() {
+        if (this.value.length() > MAX_STRING_CHARS) {
+            return new StringPartitionKeyComponent(this.value.substring(0, MAX_STRING_CHARS));
+        }
+
+        return this;
+    }
+}
@@ -0,0 +1,59 @@
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+public class UndefinedPartitionKeyComponent implements IPartitionKeyComponent {
+    public static final UndefinedPartitionKeyComponent VALUE = new UndefinedPartitionKeyComponent();
+
+    @Override
+    public int CompareTo(IPartitionKeyComponent other) {
+        if (other.getClass() != UndefinedPartitionKeyComponent.class) {
+            throw new IllegalArgumentException("other");
+        }
+
+        return 0;
+    }
+
+    @Override
+    public int GetTypeOrdinal() {
+        return PartitionKeyComponentType.UNDEFINED.type;
+    }
+
+    @Override
+    public void JsonEncode(JsonGenerator writer) {
+        try {
+            // Undefined is encoded as an empty object
+            writer.writeStartObject();
+            writer.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void WriteForHashing(OutputStream outputStream) {
+        WriteForBinaryEncoding(outputStream);
+    }
+
+    @Override
+    public void WriteForBinaryEncoding(OutputStream outputStream) {
+        try {
+            outputStream.write(PartitionKeyComponentType.UNDEFINED.type);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void WriteForHashingV2(OutputStream binaryWriter) {
+        WriteForBinaryEncoding(binaryWriter);
+    }
+
+    @Override
+    public IPartitionKeyComponent Truncate() {
+        return this;
+    }
+}
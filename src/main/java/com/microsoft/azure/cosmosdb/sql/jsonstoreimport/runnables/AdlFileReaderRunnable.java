@@ -21,21 +21,18 @@ package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables;
 
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.AdlStoreClientExtension;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.CsvColumnReader;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntity;
-import java.io.BufferedReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.transform.TransformStage;
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 import org.apache.log4j.Logger;
 
 public class AdlFileReaderRunnable implements Runnable {
 
   private final Logger logger = Logger.getLogger(AdlFileReaderRunnable.class);
-  private Queue<List<String>> preLoadedData = new LinkedList<>();
-  private BufferedReader bufferedReader;
-  private boolean isCompleted;
-  private int waitTime;
+  private PrefetchBuffer preLoadedData;
+  private CsvColumnReader csvColumnReader;
   private int jsonDocColumnIndexInCsv;
 
   private JsonStoreEntity jsonStoreEntity;
@@ -43,62 +40,78 @@ public class AdlFileReaderRunnable implements Runnable {
   public AdlFileReaderRunnable(JsonStoreEntity jsonStoreEntity, int jsonDocColumnIndexInCsv)
       throws IOException {
     this.jsonStoreEntity = jsonStoreEntity;
-    this.bufferedReader = AdlStoreClientExtension.getReadStream(jsonStoreEntity.location);
-    this.isCompleted = false;
-    this.waitTime = 300;
     this.jsonDocColumnIndexInCsv = jsonDocColumnIndexInCsv;
+    this.csvColumnReader =
+        AdlStoreClientExtension.getCsvColumnReader(
+            jsonStoreEntity.location, jsonDocColumnIndexInCsv);
+    this.preLoadedData =
+        new PrefetchBuffer(
+            jsonStoreEntity.name,
+            Settings.getPrefetchMinBufferSizeInMb() * 1024L * 1024L,
+            Settings.getPrefetchMaxBufferSizeInMb() * 1024L * 1024L);
   }
 
-  public boolean getIsCompleted() {
-    return isCompleted && preLoadedData.isEmpty();
+  /** Stops the reader at its next batch, the batches read already are dropped. */
+  public void cancel() {
+    preLoadedData.cancel();
   }
 
-  public List<String> getJsonDocs() {
+  public boolean getIsCompleted() {
+    return preLoadedData.isDrained();
+  }
 
-    while (preLoadedData.isEmpty()) {
-      return null;
-    }
-    return preLoadedData.remove();
+  /**
+   * Waits for the next batch of documents, returns null once the file is finished.
+   *
+   * @throws IOException when reading the file failed, the file is not finished then.
+   */
+  public List<String> getJsonDocs() throws InterruptedException, IOException {
+    return preLoadedData.take();
   }
 
   @Override
   public void run() {
-
-    while (true) {
-      while (preLoadedData.size() < Settings.getpreCookedDataQueueSize()) {
-
-        try {
-          final long startTime = System.currentTimeMillis();
-          List<String> jsonRecords =
-              AdlStoreClientExtension.getJsonDocsFromCsvStream(
-                  bufferedReader, Settings.getJsonDocsBatchCount(), this.jsonDocColumnIndexInCsv);
-          long endTime = System.currentTimeMillis();
-          long totalTime = endTime - startTime;
-          logger.info(
-              jsonStoreEntity.name
-                  + " Fetching records execution time in seconds: "
-                  + totalTime / 1000);
-          if (jsonRecords.size() <= 0) {
-            isCompleted = true;
-            logger.info(" File " + jsonStoreEntity.location + " Finished.");
-            break;
-          } else {
-            preLoadedData.add(jsonRecords);
-          }
-
-        } catch (IOException e) {
-          logger.error("File " + jsonStoreEntity.location + " reading error" + e.getMessage());
+    try {
+      while (true) {
+        final long startTime = System.currentTimeMillis();
+        List<String> jsonRecords =
+            AdlStoreClientExtension.getJsonDocsFromCsvStream(
+                csvColumnReader, Settings.getJsonDocsBatchCount());
+        long endTime = System.currentTimeMillis();
+        long totalTime = endTime - startTime;
+        logger.info(
+            jsonStoreEntity.name
+                + " Fetching records execution time in seconds: "
+                + totalTime / 1000);
+        if (jsonRecords.size() <= 0) {
+          logger.info(" File " + jsonStoreEntity.location + " Finished.");
+          break;
+        }
+        // Files of the local shuffle hold screened documents already
+        if (Settings.getScreenSortedData()) {
+          // Transformed on the stage while the order of the sorted file is kept
+          jsonRecords = TransformStage.transformSorted(jsonStoreEntity.location, jsonRecords);
+        }
+        if (!jsonRecords.isEmpty()) {
+          preLoadedData.put(jsonRecords);
         }
       }
-      if (isCompleted) {
-        logger.info("ADL Reader exiting while loop for " + jsonStoreEntity.name);
-        break;
-      }
+    } catch (IOException e) {
+      logger.error("File " + jsonStoreEntity.location + " reading error" + e.getMessage());
+      preLoadedData.fail(e);
+    } catch (RuntimeException e) {
+      logger.error("File " + jsonStoreEntity.location + " reading error" + e.getMessage(), e);
+      preLoadedData.fail(new IOException(e));
+    } catch (InterruptedException e) {
+      logger.error("ADL Reader interrupted for " + jsonStoreEntity.name);
+      preLoadedData.fail(new IOException("Reading " + jsonStoreEntity.location + " interrupted"));
+      Thread.currentThread().interrupt();
+    } finally {
+      preLoadedData.finish();
       try {
-        // wait for 3 milliseconds
-        Thread.sleep(waitTime);
-      } catch (InterruptedException e) {
-        logger.error("Thread sleep failure" + e.getMessage());
+        csvColumnReader.close();
+      } catch (IOException e) {
+        logger.error("Closing " + jsonStoreEntity.location + " failed " + e.getMessage());
       }
     }
   }
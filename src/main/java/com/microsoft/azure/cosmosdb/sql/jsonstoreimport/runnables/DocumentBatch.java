@@ -0,0 +1,49 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import java.util.Collections;
+import java.util.List;
+
+/** A batch of json documents handed from file readers to writers, tagged with its source file. */
+public class DocumentBatch {
+  /** Signals a writer that no more batches will follow. */
+  public static final DocumentBatch END = new DocumentBatch(null, Collections.emptyList());
+
+  public final String location;
+  public final List<String> jsonDocs;
+  /**
+   * Heap taken by the documents in KB, counted against localIngestionMaxQueuedMb. A batch larger
+   * than the whole budget counts as the budget so it can still pass on its own.
+   */
+  public final int queuedKb;
+
+  public DocumentBatch(String location, List<String> jsonDocs) {
+    this.location = location;
+    this.jsonDocs = jsonDocs;
+    long chars = 0;
+    for (String jsonDoc : jsonDocs) {
+      chars += jsonDoc.length();
+    }
+    this.queuedKb =
+        (int) Math.min(chars * 2 / 1024, Settings.getLocalIngestionMaxQueuedMb() * 1024L);
+  }
+}
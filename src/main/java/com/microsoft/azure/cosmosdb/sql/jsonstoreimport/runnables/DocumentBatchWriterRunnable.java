@@ -0,0 +1,101 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.CosmosDbSqlWriter;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntityImportResponse;
+import com.microsoft.azure.documentdb.bulkexecutor.DocumentBulkExecutor;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import org.apache.log4j.Logger;
+
+/**
+ * Takes batches from the shared queue and imports them until {@link DocumentBatch#END} is received.
+ * A failed batch marks its file as failed, remaining batches of that file are skipped. A writer
+ * that dies, for instance out of memory, fails the file of its batch and calls onWriterFailure.
+ */
+public class DocumentBatchWriterRunnable implements Runnable {
+  private final Logger logger = Logger.getLogger(DocumentBatchWriterRunnable.class);
+  private final DocumentBulkExecutor bulkImporter;
+  private final BlockingQueue<DocumentBatch> documentBatches;
+  private final Semaphore queuedKb;
+  private final PendingBatches pendingBatches;
+  private final Set<String> failedFiles;
+  private final List<JsonStoreEntityImportResponse> jsonStoreEntityImportResponses;
+  private final Runnable onWriterFailure;
+
+  public DocumentBatchWriterRunnable(
+      DocumentBulkExecutor bulkImporter,
+      BlockingQueue<DocumentBatch> documentBatches,
+      Semaphore queuedKb,
+      PendingBatches pendingBatches,
+      Set<String> failedFiles,
+      List<JsonStoreEntityImportResponse> jsonStoreEntityImportResponses,
+      Runnable onWriterFailure) {
+    this.bulkImporter = bulkImporter;
+    this.documentBatches = documentBatches;
+    this.queuedKb = queuedKb;
+    this.pendingBatches = pendingBatches;
+    this.failedFiles = failedFiles;
+    this.jsonStoreEntityImportResponses = jsonStoreEntityImportResponses;
+    this.onWriterFailure = onWriterFailure;
+  }
+
+  @Override
+  public void run() {
+    DocumentBatch documentBatch = null;
+    try {
+      while ((documentBatch = documentBatches.take()) != DocumentBatch.END) {
+        if (!failedFiles.contains(documentBatch.location)) {
+          write(documentBatch);
+        }
+        queuedKb.release(documentBatch.queuedKb);
+        pendingBatches.done(documentBatch.location);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Throwable e) {
+      logger.error("Writer failed due to " + e.getMessage(), e);
+      if (documentBatch != null) {
+        failedFiles.add(documentBatch.location);
+      }
+      onWriterFailure.run();
+      throw e;
+    }
+  }
+
+  private void write(DocumentBatch documentBatch) {
+    try {
+      JsonStoreEntityImportResponse jsonStoreEntityImportResponse =
+          new CosmosDbSqlWriter()
+              .ingestJsonStoreEntity(documentBatch.location, documentBatch.jsonDocs, bulkImporter);
+      jsonStoreEntityImportResponses.add(jsonStoreEntityImportResponse);
+      if (jsonStoreEntityImportResponse.isError()) {
+        failedFiles.add(documentBatch.location);
+      }
+    } catch (Exception e) {
+      logger.error(
+          "Writing batch of " + documentBatch.location + " failed due to " + e.getMessage(), e);
+      failedFiles.add(documentBatch.location);
+    }
+  }
+}
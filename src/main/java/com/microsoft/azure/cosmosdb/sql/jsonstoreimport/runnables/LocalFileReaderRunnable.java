@@ -0,0 +1,85 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.FileReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.transform.TransformingJsonDocBatchReader;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import org.apache.log4j.Logger;
+
+/**
+ * Reads one local file and puts its batches on the shared writer queue. Blocks while the queue is
+ * full, or the batches not yet written take localIngestionMaxQueuedMb, so readers never run
+ * further ahead of the writers than the queue allows. Readers are interrupted when a writer fails.
+ */
+public class LocalFileReaderRunnable implements Runnable {
+  private final Logger logger = Logger.getLogger(LocalFileReaderRunnable.class);
+  private final String filePath;
+  private final BlockingQueue<DocumentBatch> documentBatches;
+  private final Semaphore queuedKb;
+  private final PendingBatches pendingBatches;
+  private final Set<String> failedFiles;
+
+  public LocalFileReaderRunnable(
+      String filePath,
+      BlockingQueue<DocumentBatch> documentBatches,
+      Semaphore queuedKb,
+      PendingBatches pendingBatches,
+      Set<String> failedFiles) {
+    this.filePath = filePath;
+    this.documentBatches = documentBatches;
+    this.queuedKb = queuedKb;
+    this.pendingBatches = pendingBatches;
+    this.failedFiles = failedFiles;
+  }
+
+  public String getFilePath() {
+    return filePath;
+  }
+
+  @Override
+  public void run() {
+    pendingBatches.open(filePath);
+    try (JsonDocBatchReader jsonDocBatches =
+        new TransformingJsonDocBatchReader(
+            filePath, FileReader.getJsonDocBatches(filePath, Settings.getIngestionBatchSize()))) {
+      // Stop reading as soon as a writer reports a failed batch of this file
+      while (!failedFiles.contains(filePath) && jsonDocBatches.hasNext()) {
+        DocumentBatch documentBatch = new DocumentBatch(filePath, jsonDocBatches.next());
+        queuedKb.acquire(documentBatch.queuedKb);
+        pendingBatches.add(filePath);
+        documentBatches.put(documentBatch);
+      }
+    } catch (InterruptedException e) {
+      logger.error("Reading " + filePath + " was stopped");
+      Thread.currentThread().interrupt();
+      failedFiles.add(filePath);
+    } catch (Exception e) {
+      logger.error("Reading " + filePath + " failed due to " + e.getMessage(), e);
+      failedFiles.add(filePath);
+    } finally {
+      pendingBatches.done(filePath);
+    }
+  }
+}
@@ -24,16 +24,18 @@ import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.ImportQueue;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.ImportWorkItem;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.CosmosDbSqlClientExtension;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.CosmosDbSqlWriter;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.RejectOutput;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntity;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntityImportResponse;
 import com.microsoft.azure.documentdb.DocumentClientException;
 import com.microsoft.azure.documentdb.bulkexecutor.DocumentBulkExecutor;
-import com.microsoft.azure.documentdb.bulkexecutor.BulkImportResponse;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.regex.Pattern;
@@ -50,6 +52,11 @@ public class PartitionIngestionRunnable implements Runnable {
   private String partitionId;
   private Gson gson = new Gson();
   private List<JsonStoreEntityImportResponse> jsonStoreEntityImportResponses;
+  // Readers of the file being imported and of the next one, stopped when the partition fails
+  private AdlFileReaderRunnable currentReaderTask;
+  private AdlFileReaderRunnable nextReaderTask;
+  private Thread currentReaderThread;
+  private Thread nextReaderThread;
 
   public PartitionIngestionRunnable(
       DocumentBulkExecutor bulkImporter,
@@ -109,15 +116,13 @@ public class PartitionIngestionRunnable implements Runnable {
 
     boolean isError = false;
 
-    AdlFileReaderRunnable currentReaderTask = null;
-    AdlFileReaderRunnable nextReaderTask = null;
 
     try {
       currentReaderTask =
           new AdlFileReaderRunnable(
               sortedPartitionImportWorkItems.get(0).getJsonStoreEntityInstance(),
               jsonDocColumnIndexInCsv);
-      Thread currentReaderThread = new Thread(currentReaderTask);
+      currentReaderThread = new Thread(currentReaderTask);
       currentReaderThread.start();
 
       // When more than one item start 2 file also in the background so
@@ -128,7 +133,7 @@ public class PartitionIngestionRunnable implements Runnable {
                 sortedPartitionImportWorkItems.get(1).getJsonStoreEntityInstance(),
                 jsonDocColumnIndexInCsv);
 
-        Thread nextReaderThread = new Thread(nextReaderTask);
+        nextReaderThread = new Thread(nextReaderTask);
         nextReaderThread.start();
       }
 
@@ -139,64 +144,74 @@ public class PartitionIngestionRunnable implements Runnable {
 
     if (isError) {
       logger.error("Failed to create reader tasks.");
+      stopReaders();
       return;
     }
 
     int importWorkItemsTrackingCounter = 0;
     while (importWorkItemsTrackingCounter < sortedPartitionImportWorkItems.size()) {
       jsonStoreEntityImportResponses = new ArrayList<>();
-      while (!currentReaderTask.getIsCompleted()) {
-        try {
-          List<String> docs = currentReaderTask.getJsonDocs();
-          if (docs != null) {
-            logger.info("Received data, starting bulk import");
-
-            try {
-              BulkImportResponse response =
-                  bulkImporter.importAll(docs, true, true, null);
-              jsonStoreEntityImportResponses.add(
-                  new JsonStoreEntityImportResponse(response, docs.size()));
-              logger.info("P_" + partitionId + " Total time " + response.getTotalTimeTaken());
-              logger.info("P_" + partitionId + " Documents sent " + docs.size());
-              logger.info(
-                  "P_"
-                      + partitionId
-                      + " Documents imported "
-                      + response.getNumberOfDocumentsImported());
-              logger.info(
-                  "P_"
-                      + partitionId
-                      + " Total Rus consumed "
-                      + response.getTotalRequestUnitsConsumed());
-            } catch (DocumentClientException e) {
-              e.printStackTrace();
-            }
-          } else {
-            // waiting for documents
-            Thread.sleep(300);
-            // logger.info("waiting for documents from adl");
-          }
-        } catch (InterruptedException e) {
-          e.printStackTrace();
+      ImportWorkItem currentWorkItem =
+          sortedPartitionImportWorkItems.get(importWorkItemsTrackingCounter);
+      try {
+        List<String> docs;
+        String location = currentWorkItem.getJsonStoreEntityInstance().location;
+        while ((docs = currentReaderTask.getJsonDocs()) != null) {
+          logger.info("Received data, starting bulk import");
+          // The writer sends bad input to the rejects and retries partition splits
+          JsonStoreEntityImportResponse response =
+              new CosmosDbSqlWriter().ingestJsonStoreEntity(location, docs, bulkImporter);
+          jsonStoreEntityImportResponses.add(response);
+          logger.info(
+              "P_"
+                  + partitionId
+                  + " Total time in seconds "
+                  + response.getTotalTimeTakenInSeconds());
+          logger.info("P_" + partitionId + " Documents sent " + docs.size());
+          logger.info(
+              "P_"
+                  + partitionId
+                  + " Documents imported "
+                  + response.getNumberOfDocumentsImported());
+          logger.info(
+              "P_"
+                  + partitionId
+                  + " Total Rus consumed "
+                  + response.getTotalRequestUnitsConsumed());
         }
+      } catch (InterruptedException e) {
+        e.printStackTrace();
+        stopReaders();
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        // The file and the rest of the partition stay incomplete, a rerun imports them again
+        logger.error(
+            "P_"
+                + partitionId
+                + " importing "
+                + currentWorkItem.getJsonStoreEntityInstance().location
+                + " failed due to "
+                + e.getMessage(),
+            e);
+        stopReaders();
+        RejectOutput.close(currentWorkItem.getJsonStoreEntityInstance().location);
+        releaseFailedPartition(currentWorkItem, e);
+        return;
       }
       JsonStoreEntityImportResponse aggregateResponse =
           JsonStoreEntityImportResponse.aggregate(jsonStoreEntityImportResponses);
+      aggregateResponse.addScreenedOutDocuments(
+          RejectOutput.close(currentWorkItem.getJsonStoreEntityInstance().location));
       // Update the json entity
-      JsonStoreEntity entity =
-          sortedPartitionImportWorkItems
-              .get(importWorkItemsTrackingCounter)
-              .getJsonStoreEntityInstance();
+      JsonStoreEntity entity = currentWorkItem.getJsonStoreEntityInstance();
       entity.jsonStoreEntityImportResponse = aggregateResponse;
       entity.isComplete = true;
       entity.isInProgress = false;
       entity.completeDate = Instant.now();
       try {
         this.importTrackingClient.updateItem(
-            sortedPartitionImportWorkItems
-                .get(importWorkItemsTrackingCounter)
-                .getMappedCosmosDbDocument(),
-            gson.toJson(entity));
+            currentWorkItem.getMappedCosmosDbDocument(), gson.toJson(entity));
       } catch (DocumentClientException e) {
         e.printStackTrace();
       }
@@ -204,6 +219,8 @@ public class PartitionIngestionRunnable implements Runnable {
       importWorkItemsTrackingCounter++;
 
       currentReaderTask = nextReaderTask;
+      currentReaderThread = nextReaderThread;
+      nextReaderThread = null;
 
       // if next item exists
       if (importWorkItemsTrackingCounter + 1 < sortedPartitionImportWorkItems.size()) {
@@ -214,7 +231,7 @@ public class PartitionIngestionRunnable implements Runnable {
                       .get(importWorkItemsTrackingCounter + 1)
                       .getJsonStoreEntityInstance(),
                   jsonDocColumnIndexInCsv);
-          Thread nextReaderThread = new Thread(nextReaderTask);
+          nextReaderThread = new Thread(nextReaderTask);
           nextReaderThread.start();
 
         } catch (IOException e) {
@@ -224,12 +241,53 @@ public class PartitionIngestionRunnable implements Runnable {
 
         if (isError) {
           logger.error("Failed to create reader tasks.");
+          stopReaders();
           return;
         }
       }
     }
   }
 
+  /**
+   * Stops the readers of the current and the next file, a reader left running would block on its
+   * full prefetch buffer forever and keep the worker from exiting.
+   */
+  private void stopReaders() {
+    AdlFileReaderRunnable[] readerTasks = {currentReaderTask, nextReaderTask};
+    for (AdlFileReaderRunnable readerTask : readerTasks) {
+      if (readerTask != null) {
+        readerTask.cancel();
+      }
+    }
+    for (Thread readerThread : new Thread[] {currentReaderThread, nextReaderThread}) {
+      if (readerThread != null) {
+        readerThread.interrupt();
+      }
+    }
+  }
+
+  /**
+   * Records the failure on the file, which stays incomplete, and releases the claim of the
+   * partition so it is claimed again and the incomplete files are imported again.
+   */
+  private void releaseFailedPartition(ImportWorkItem failedWorkItem, Exception failure) {
+    JsonStoreEntity entity = failedWorkItem.getJsonStoreEntityInstance();
+    entity.jsonStoreEntityImportResponse =
+        new JsonStoreEntityImportResponse(Collections.singletonList(failure.getMessage()));
+    entity.isComplete = false;
+    entity.isInProgress = false;
+    JsonStoreEntity partition = importWorkItem.getJsonStoreEntityInstance();
+    partition.isInProgress = false;
+    try {
+      this.importTrackingClient.updateItem(
+          failedWorkItem.getMappedCosmosDbDocument(), gson.toJson(entity));
+      this.importTrackingClient.updateItem(
+          importWorkItem.getMappedCosmosDbDocument(), gson.toJson(partition));
+    } catch (DocumentClientException e) {
+      logger.error("P_" + partitionId + " releasing the claim failed due to " + e.getMessage());
+    }
+  }
+
   private String getPartitionId(String fileName) {
     String[] parts = fileName.split(Pattern.quote("."));
     String[] firstPartSplits = parts[0].split("_");
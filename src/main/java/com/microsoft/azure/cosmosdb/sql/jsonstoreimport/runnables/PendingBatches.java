@@ -0,0 +1,63 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.RejectOutput;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntityImportResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the batches of each local file still to be written. The reader holds a count until it is
+ * done, so whoever finishes last, reader or writer, closes the rejects of the file and reports the
+ * documents its screen rejected.
+ */
+public class PendingBatches {
+  private final Map<String, AtomicInteger> pendingBatches = new ConcurrentHashMap<>();
+  private final List<JsonStoreEntityImportResponse> jsonStoreEntityImportResponses;
+
+  public PendingBatches(List<JsonStoreEntityImportResponse> jsonStoreEntityImportResponses) {
+    this.jsonStoreEntityImportResponses = jsonStoreEntityImportResponses;
+  }
+
+  void open(String location) {
+    pendingBatches.put(location, new AtomicInteger(1));
+  }
+
+  void add(String location) {
+    pendingBatches.get(location).incrementAndGet();
+  }
+
+  void done(String location) {
+    if (pendingBatches.get(location).decrementAndGet() > 0) {
+      return;
+    }
+    pendingBatches.remove(location);
+    int screenedOutDocuments = RejectOutput.close(location);
+    if (screenedOutDocuments > 0) {
+      JsonStoreEntityImportResponse jsonStoreEntityImportResponse =
+          new JsonStoreEntityImportResponse();
+      jsonStoreEntityImportResponse.addScreenedOutDocuments(screenedOutDocuments);
+      jsonStoreEntityImportResponses.add(jsonStoreEntityImportResponse);
+    }
+  }
+}
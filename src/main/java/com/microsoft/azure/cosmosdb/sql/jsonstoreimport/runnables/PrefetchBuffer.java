@@ -0,0 +1,182 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.log4j.Logger;
+
+/**
+ * Blocking handoff of document batches from a single reader to a single writer, bounded by the
+ * approximate heap size of the queued documents rather than by the number of batches.
+ *
+ * <p>The bound adapts between a minimum and a maximum: it doubles whenever the writer has to wait
+ * for data, since the source is then the bottleneck and a deeper prefetch helps, and it shrinks by
+ * a quarter whenever the reader has to wait for room, since prefetching further ahead of a slow
+ * writer only costs heap.
+ */
+public class PrefetchBuffer {
+
+  private static final Logger logger = Logger.getLogger(PrefetchBuffer.class);
+  private final String name;
+  private final long minCapacityInBytes;
+  private final long maxCapacityInBytes;
+  private final Queue<List<String>> batches = new ArrayDeque<>();
+  private final Queue<Long> batchSizes = new ArrayDeque<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private long capacityInBytes;
+  private long queuedBytes;
+  private boolean isFinished;
+  private boolean isCancelled;
+  private IOException failure;
+
+  public PrefetchBuffer(String name, long minCapacityInBytes, long maxCapacityInBytes) {
+    this.name = name;
+    this.minCapacityInBytes = minCapacityInBytes;
+    this.maxCapacityInBytes = Math.max(minCapacityInBytes, maxCapacityInBytes);
+    this.capacityInBytes = minCapacityInBytes;
+  }
+
+  /**
+   * Adds a batch, waiting while the buffer is full. A batch larger than the whole capacity is still
+   * admitted once the buffer is empty, so oversized batches cannot stall the reader forever.
+   *
+   * @throws InterruptedException also once the writer cancelled the buffer.
+   */
+  public void put(List<String> batch) throws InterruptedException {
+    long batchSize = sizeOf(batch);
+    lock.lockInterruptibly();
+    try {
+      if (!isCancelled && !batches.isEmpty() && queuedBytes + batchSize > capacityInBytes) {
+        resize(capacityInBytes - capacityInBytes / 4);
+        do {
+          notFull.await();
+        } while (!isCancelled && !batches.isEmpty() && queuedBytes + batchSize > capacityInBytes);
+      }
+      if (isCancelled) {
+        throw new InterruptedException(name + " prefetch cancelled");
+      }
+      batches.add(batch);
+      batchSizes.add(batchSize);
+      queuedBytes += batchSize;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Called by the writer when it gives up, drops the queued batches and wakes up the reader. */
+  public void cancel() {
+    lock.lock();
+    try {
+      isCancelled = true;
+      batches.clear();
+      batchSizes.clear();
+      queuedBytes = 0;
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Signals that no more batches will be added. */
+  public void finish() {
+    lock.lock();
+    try {
+      isFinished = true;
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Signals that the reader failed, the writer gets the failure after the queued batches. */
+  public void fail(IOException failure) {
+    lock.lock();
+    try {
+      this.failure = failure;
+      isFinished = true;
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes the next batch, waiting for the reader if needed. Returns null once finished.
+   *
+   * @throws IOException the failure of the reader, once the batches read before it are taken.
+   */
+  public List<String> take() throws InterruptedException, IOException {
+    lock.lockInterruptibly();
+    try {
+      if (batches.isEmpty() && !isFinished) {
+        resize(capacityInBytes * 2);
+        do {
+          notEmpty.await();
+        } while (batches.isEmpty() && !isFinished);
+      }
+      List<String> batch = batches.poll();
+      if (batch != null) {
+        queuedBytes -= batchSizes.remove();
+        notFull.signal();
+      } else if (failure != null) {
+        throw new IOException("Reading " + name + " failed", failure);
+      }
+      return batch;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public boolean isDrained() {
+    lock.lock();
+    try {
+      return isFinished && batches.isEmpty();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void resize(long newCapacityInBytes) {
+    long resized = Math.max(minCapacityInBytes, Math.min(maxCapacityInBytes, newCapacityInBytes));
+    if (resized != capacityInBytes) {
+      logger.debug(
+          String.format(
+              "%s prefetch buffer resized from %d to %d bytes", name, capacityInBytes, resized));
+      capacityInBytes = resized;
+    }
+  }
+
+  private static long sizeOf(List<String> batch) {
+    // Documents are held as java strings, two bytes per char
+    long size = 0;
+    for (String jsonDoc : batch) {
+      size += 2L * jsonDoc.length();
+    }
+    return size;
+  }
+}
@@ -21,6 +21,8 @@ package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables;
 
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.DocumentGroup;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.ImportWorkItem;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonDocBatchReader;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreReader;
 import java.util.Stack;
 
@@ -42,7 +44,11 @@ public class ReadDocumentGroupRunnable implements Runnable {
       }
       JsonStoreReader jsonStoreReader =
           new JsonStoreReader(jsonStoreEntity.getJsonStoreEntityInstance());
-      stackDocs.add(new DocumentGroup(jsonStoreEntity, jsonStoreReader.getJsonDocs()));
+      JsonDocBatchReader jsonDocBatches =
+          jsonStoreReader.getJsonDocBatches(Settings.getIngestionBatchSize());
+      // Pull the first batch so ingestion of this entity can start right away
+      jsonDocBatches.hasNext();
+      stackDocs.add(new DocumentGroup(jsonStoreEntity, jsonDocBatches));
     } catch (Exception e) {
       e.printStackTrace();
     }
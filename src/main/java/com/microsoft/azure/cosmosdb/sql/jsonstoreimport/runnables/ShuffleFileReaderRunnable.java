@@ -0,0 +1,61 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.runnables;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle.ShuffleStage;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.RejectOutput;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntity;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreReader;
+import java.util.Set;
+import org.apache.log4j.Logger;
+
+/** Reads one source file and hands its batches to the shuffle stage. */
+public class ShuffleFileReaderRunnable implements Runnable {
+  private final Logger logger = Logger.getLogger(ShuffleFileReaderRunnable.class);
+  private final JsonStoreEntity jsonStoreEntity;
+  private final ShuffleStage shuffleStage;
+  private final Set<String> failedFiles;
+
+  public ShuffleFileReaderRunnable(
+      JsonStoreEntity jsonStoreEntity, ShuffleStage shuffleStage, Set<String> failedFiles) {
+    this.jsonStoreEntity = jsonStoreEntity;
+    this.shuffleStage = shuffleStage;
+    this.failedFiles = failedFiles;
+  }
+
+  @Override
+  public void run() {
+    String location = jsonStoreEntity.location;
+    try (JsonDocBatchReader jsonDocBatches =
+        new JsonStoreReader(jsonStoreEntity)
+            .getSourceJsonDocBatches(Settings.getIngestionBatchSize())) {
+      while (jsonDocBatches.hasNext()) {
+        shuffleStage.shuffle(location, jsonDocBatches.next());
+      }
+    } catch (Exception e) {
+      logger.error("Shuffling " + location + " failed due to " + e.getMessage(), e);
+      failedFiles.add(location);
+    } finally {
+      RejectOutput.close(location);
+    }
+  }
+}
@@ -20,22 +20,39 @@
 package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions;
 
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.RejectOutput;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.AvroJsonDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.ByteRangeJsonDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.CompressedInputStreams;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.CsvColumnReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.FileReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStreamDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.LineDelimitedJsonDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.ParquetJsonDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.RangeReadInputFile;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.RangedInputStream;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.SourceFileCache;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.SourceFormat;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.transform.TransformStage;
+import com.microsoft.azure.datalake.store.ADLFileInputStream;
 import com.microsoft.azure.datalake.store.ADLStoreClient;
 import com.microsoft.azure.datalake.store.DirectoryEntry;
+import com.microsoft.azure.datalake.store.DirectoryEntryType;
 import com.microsoft.azure.datalake.store.IfExists;
 import com.microsoft.azure.datalake.store.oauth2.AccessTokenProvider;
 import com.microsoft.azure.datalake.store.oauth2.ClientCredsTokenProvider;
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
 import org.apache.log4j.Logger;
 
 public class AdlStoreClientExtension {
@@ -53,7 +70,7 @@ public class AdlStoreClientExtension {
       try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
         String line;
         while ((line = reader.readLine()) != null) {
-          records.add(Settings.applyIdAndPartitionKeySettings(line).toString());
+          records.add(line);
         }
       }
     }
@@ -61,7 +78,44 @@ public class AdlStoreClientExtension {
     long endTime = System.currentTimeMillis();
     long totalTime = endTime - startTime;
     logger.info("Adl file loading execution time in seconds: " + totalTime / 1000);
-    return records;
+    try {
+      return TransformStage.transform(fileName, records);
+    } finally {
+      RejectOutput.close(fileName);
+    }
+  }
+
+  public static JsonDocBatchReader getJsonDocBatches(String fileName, int batchSize)
+      throws IOException {
+    logger.info("Streaming adl file " + fileName + " ...");
+    switch (SourceFormat.of(fileName)) {
+      case PARQUET:
+        initClient();
+        long fileSize = getFileSize(fileName);
+        RangedInputStream.RangeReader rangeReader =
+            (offset, length) -> readRange(fileName, offset, length);
+        if (SourceFileCache.isEnabled()) {
+          String version = getFileVersion(fileName);
+          Path cachedFile = SourceFileCache.getCachedFile(fileName, version);
+          if (cachedFile != null) {
+            return FileReader.getJsonDocBatches(cachedFile.toString(), batchSize);
+          }
+          rangeReader = SourceFileCache.cacheRanges(fileName, version, fileSize, rangeReader);
+        }
+        return new ParquetJsonDocBatchReader(
+            fileName, new RangeReadInputFile(fileSize, rangeReader), batchSize);
+      case AVRO:
+        initClient();
+        return new AvroJsonDocBatchReader(fileName, openInputStream(fileName), batchSize);
+      case JSON:
+        initClient();
+        return new JsonStreamDocBatchReader(
+            fileName,
+            CompressedInputStreams.decompress(fileName, openInputStream(fileName)),
+            batchSize);
+      default:
+        return new LineDelimitedJsonDocBatchReader(fileName, getReadStream(fileName), batchSize);
+    }
   }
 
   private static void initClient() {
@@ -78,17 +132,52 @@ public class AdlStoreClientExtension {
 
   public static List<String> getAdlFolderFileNames(String adlFolder) throws IOException {
     initClient();
-    List<DirectoryEntry> list =
-        client.enumerateDirectory(adlFolder, Settings.getMaxFileEntriesToRetrieve());
     List<String> files = new ArrayList<String>();
+    String startAfter = null;
+    List<DirectoryEntry> page;
+    do {
+      page =
+          client.enumerateDirectory(adlFolder, Settings.getMaxFileEntriesToRetrieve(), startAfter);
+      for (DirectoryEntry entry : page) {
+        files.add(entry.fullName);
+        startAfter = entry.name;
+      }
+    } while (page.size() >= Settings.getMaxFileEntriesToRetrieve());
 
-    logger.info(String.format("Found %d files in ADL folder", list.size()));
-    for (DirectoryEntry entry : list) {
-      files.add(entry.fullName);
-    }
+    logger.info(String.format("Found %d files in ADL folder", files.size()));
     return files;
   }
 
+  /** Streams the files under an ADL folder while they are listed. */
+  public static StoreListing listFiles(String adlFolder) throws IOException {
+    return listFiles(adlFolder, Settings.getListingRecursive());
+  }
+
+  /** Streams the files under an ADL folder while they are listed, walking sub folders if set. */
+  public static StoreListing listFiles(String adlFolder, boolean isRecursive) throws IOException {
+    initClient();
+    return new StoreListing(adlFolder, AdlStoreClientExtension::listFolder, isRecursive);
+  }
+
+  private static void listFolder(String adlFolder, StoreListing listing)
+      throws IOException, InterruptedException {
+    int pageSize = Settings.getMaxFileEntriesToRetrieve();
+    String startAfter = null;
+    List<DirectoryEntry> page;
+    do {
+      page = client.enumerateDirectory(adlFolder, pageSize, startAfter);
+      for (DirectoryEntry entry : page) {
+        if (entry.type == DirectoryEntryType.DIRECTORY) {
+          listing.addFolder(entry.fullName);
+        } else {
+          listing.addFile(
+              entry.fullName, entry.name, entry.length, entry.lastModifiedTime.toInstant());
+        }
+        startAfter = entry.name;
+      }
+    } while (page.size() >= pageSize);
+  }
+
   public static void uploadDocs(String fileName, List<String> jsonRecords) throws IOException {
     initClient();
     logger.info("Uploading a file " + fileName);
@@ -102,28 +191,107 @@ public class AdlStoreClientExtension {
     stream.close();
   }
 
+  public static void uploadFile(String fileName, Path file) throws IOException {
+    initClient();
+    logger.info("Uploading a file " + fileName);
+    try (OutputStream stream = client.createFile(fileName, IfExists.OVERWRITE)) {
+      Files.copy(file, stream);
+    }
+  }
+
+  /** Deletes the files of an ADL folder whose name starts with namePrefix, if the folder exists. */
+  public static void deleteFiles(String adlFolder, String namePrefix) throws IOException {
+    initClient();
+    if (!client.checkExists(adlFolder)) {
+      return;
+    }
+    for (String file : getAdlFolderFileNames(adlFolder)) {
+      if (file.substring(file.lastIndexOf('/') + 1).startsWith(namePrefix)) {
+        logger.info("Deleting a file " + file);
+        client.delete(file);
+      }
+    }
+  }
+
   public static BufferedReader getReadStream(String fileName) throws IOException {
     initClient();
-    InputStream in = client.getReadStream(fileName);
+    InputStream in = CompressedInputStreams.decompress(fileName, openInputStream(fileName));
     return new BufferedReader(new InputStreamReader(in));
   }
 
-  public static List<String> getJsonDocsFromCsvStream(
-      BufferedReader bufferedReader, int noOfRecordsToFetch, int jsonDocColumnIndexInCsv)
+  /** Reads the json lines owned by a byte range of a line delimited file. */
+  public static JsonDocBatchReader getJsonDocBatches(
+      String fileName, long offset, long length, int batchSize) throws IOException {
+    logger.info(String.format("Streaming adl file %s from byte %d ...", fileName, offset));
+    long start = offset == 0 ? 0 : offset - 1;
+    InputStream in =
+        new RangedInputStream(
+            fileName,
+            getFileSize(fileName) - start,
+            Settings.getRangedReadChunkSizeInMb() * 1024 * 1024,
+            Settings.getRangedReadConcurrency(),
+            (rangeOffset, rangeLength) -> readRange(fileName, start + rangeOffset, rangeLength));
+    return new ByteRangeJsonDocBatchReader(fileName, in, offset, length, batchSize);
+  }
+
+  private static InputStream openInputStream(String fileName) throws IOException {
+    if (!SourceFileCache.isEnabled()) {
+      return openRemoteInputStream(fileName);
+    }
+    return SourceFileCache.open(
+        fileName,
+        getFileVersion(fileName),
+        getFileSize(fileName),
+        () -> openRemoteInputStream(fileName));
+  }
+
+  /** ADL has no ETag, length and modified time identify a version of the file. */
+  private static String getFileVersion(String fileName) throws IOException {
+    DirectoryEntry entry = client.getDirectoryEntry(fileName);
+    return entry.length + "-" + entry.lastModifiedTime.getTime();
+  }
+
+  private static InputStream openRemoteInputStream(String fileName) throws IOException {
+    long fileSize = getFileSize(fileName);
+    if (fileSize < Settings.getRangedReadMinFileSizeInMb() * 1024L * 1024L) {
+      return client.getReadStream(fileName);
+    }
+    return new RangedInputStream(
+        fileName,
+        fileSize,
+        Settings.getRangedReadChunkSizeInMb() * 1024 * 1024,
+        Settings.getRangedReadConcurrency(),
+        (offset, length) -> readRange(fileName, offset, length));
+  }
+
+  private static byte[] readRange(String fileName, long offset, int length) throws IOException {
+    byte[] range = new byte[length];
+    try (ADLFileInputStream in = client.getReadStream(fileName)) {
+      int totalRead = 0;
+      while (totalRead < length) {
+        int read = in.read(offset + totalRead, range, totalRead, length - totalRead);
+        if (read < 0) {
+          throw new EOFException("Unexpected end of " + fileName + " at " + (offset + totalRead));
+        }
+        totalRead += read;
+      }
+    }
+    return range;
+  }
+
+  public static CsvColumnReader getCsvColumnReader(String fileName, int jsonDocColumnIndexInCsv)
       throws IOException {
-    int count = 0;
+    return new CsvColumnReader(getReadStream(fileName), jsonDocColumnIndexInCsv);
+  }
+
+  public static List<String> getJsonDocsFromCsvStream(
+      CsvColumnReader csvColumnReader, int noOfRecordsToFetch) throws IOException {
     final long startTime = System.currentTimeMillis();
     List<String> jsonRecords = new ArrayList<>();
-    String line;
-    while ((line = bufferedReader.readLine()) != null) {
-      StringReader stringReader = new StringReader(line);
-      CSVParser parser = new CSVParser(stringReader, CSVFormat.DEFAULT);
-      String jsonDoc = parser.getRecords().get(0).get(jsonDocColumnIndexInCsv);
-      parser.close();
-      jsonRecords.add(jsonDoc);
-      count++;
-      if (count > noOfRecordsToFetch) {
-        break;
+    while (jsonRecords.size() < noOfRecordsToFetch && csvColumnReader.nextRecord()) {
+      String jsonDoc = csvColumnReader.getColumnValue();
+      if (!jsonDoc.isEmpty()) {
+        jsonRecords.add(jsonDoc);
       }
     }
     long endTime = System.currentTimeMillis();
@@ -133,7 +301,7 @@ public class AdlStoreClientExtension {
   }
 
   public static long getFileSize(String fileName) throws IOException {
-
+    initClient();
     DirectoryEntry ent = client.getDirectoryEntry(fileName);
     return ent.length;
   }
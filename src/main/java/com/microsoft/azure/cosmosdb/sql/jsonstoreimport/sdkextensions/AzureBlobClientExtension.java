@@ -19,20 +19,39 @@
 
 package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions;
 
+import com.azure.core.util.Context;
 import com.azure.storage.blob.BlobClient;
 import com.azure.storage.blob.BlobContainerClient;
 import com.azure.storage.blob.BlobServiceClient;
 import com.azure.storage.blob.BlobServiceClientBuilder;
 import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobProperties;
+import com.azure.storage.blob.models.BlobRange;
+import com.azure.storage.blob.models.ListBlobsOptions;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Constants;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.AvroJsonDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.ByteRangeJsonDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.CompressedInputStreams;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.FileReader;
-import java.io.FileOutputStream;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStreamDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.LineDelimitedJsonDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.ParquetJsonDocBatchReader;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.RangeReadInputFile;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.RangedInputStream;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.ReadAheadInputStream;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.SourceFileCache;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.SourceFormat;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.InvalidKeyException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.regex.Pattern;
 import org.apache.log4j.Logger;
 
@@ -42,17 +61,102 @@ public class AzureBlobClientExtension {
   private static BlobServiceClient blobServiceClient;
   private static BlobContainerClient blobContainerClient;
 
-  public static List<String> getJsonDocs(String location) throws URISyntaxException, IOException, InvalidKeyException {
+  public static JsonDocBatchReader getJsonDocBatches(String location, int batchSize)
+      throws URISyntaxException, IOException, InvalidKeyException {
     // Location contains container and blob file name
     String[] parts = location.split(Pattern.quote(Constants.CONTAINER_BLOB_SEPERATOR));
     initClient(parts[0]);
     BlobClient blobClient = blobContainerClient.getBlobClient(parts[1]);
-    FileOutputStream fileOutputStream = new FileOutputStream(blobClient.getBlobName());
-    logger.info("Downloading blob: " + parts[1]);
-    blobClient.download(fileOutputStream);
-    logger.info("Download completed");
-    fileOutputStream.close();
-    return FileReader.getJsonDocs(blobClient.getBlobName(), true);
+    logger.info("Streaming blob: " + parts[1]);
+    switch (SourceFormat.of(parts[1])) {
+      case PARQUET:
+        BlobProperties properties = blobClient.getProperties();
+        long blobSize = properties.getBlobSize();
+        RangedInputStream.RangeReader rangeReader =
+            (offset, length) -> readRange(blobClient, offset, length);
+        if (SourceFileCache.isEnabled()) {
+          String version = properties.getETag();
+          Path cachedFile = SourceFileCache.getCachedFile(location, version);
+          if (cachedFile != null) {
+            return FileReader.getJsonDocBatches(cachedFile.toString(), batchSize);
+          }
+          rangeReader = SourceFileCache.cacheRanges(location, version, blobSize, rangeReader);
+        }
+        return new ParquetJsonDocBatchReader(
+            location, new RangeReadInputFile(blobSize, rangeReader), batchSize);
+      case AVRO:
+        return new AvroJsonDocBatchReader(location, openInputStream(blobClient), batchSize);
+      case JSON:
+        return new JsonStreamDocBatchReader(
+            location,
+            CompressedInputStreams.decompress(parts[1], openInputStream(blobClient)),
+            batchSize);
+      default:
+        break;
+    }
+    InputStream in =
+        CompressedInputStreams.decompress(blobClient.getBlobName(), openInputStream(blobClient));
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    return new LineDelimitedJsonDocBatchReader(location, reader, batchSize);
+  }
+
+  /** Reads the json lines owned by a byte range of a line delimited blob. */
+  public static JsonDocBatchReader getJsonDocBatches(
+      String location, long offset, long length, int batchSize)
+      throws URISyntaxException, IOException, InvalidKeyException {
+    String[] parts = location.split(Pattern.quote(Constants.CONTAINER_BLOB_SEPERATOR));
+    initClient(parts[0]);
+    BlobClient blobClient = blobContainerClient.getBlobClient(parts[1]);
+    logger.info(String.format("Streaming blob: %s from byte %d", parts[1], offset));
+    long start = offset == 0 ? 0 : offset - 1;
+    InputStream in =
+        new RangedInputStream(
+            blobClient.getBlobName(),
+            blobClient.getProperties().getBlobSize() - start,
+            Settings.getRangedReadChunkSizeInMb() * 1024 * 1024,
+            Settings.getRangedReadConcurrency(),
+            (rangeOffset, rangeLength) -> readRange(blobClient, start + rangeOffset, rangeLength));
+    return new ByteRangeJsonDocBatchReader(location, in, offset, length, batchSize);
+  }
+
+  private static InputStream openInputStream(BlobClient blobClient) throws IOException {
+    if (!SourceFileCache.isEnabled()) {
+      return openRemoteInputStream(blobClient);
+    }
+    String location =
+        blobClient.getContainerName()
+            + Constants.CONTAINER_BLOB_SEPERATOR
+            + blobClient.getBlobName();
+    BlobProperties properties = blobClient.getProperties();
+    return SourceFileCache.open(
+        location,
+        properties.getETag(),
+        properties.getBlobSize(),
+        () -> openRemoteInputStream(blobClient));
+  }
+
+  private static InputStream openRemoteInputStream(BlobClient blobClient) {
+    long blobSize = blobClient.getProperties().getBlobSize();
+    if (blobSize < Settings.getRangedReadMinFileSizeInMb() * 1024L * 1024L) {
+      return new ReadAheadInputStream(
+          blobClient.openInputStream(),
+          Settings.getReadAheadChunkSizeInKb() * 1024,
+          Settings.getReadAheadChunkCount(),
+          blobClient.getBlobName());
+    }
+    return new RangedInputStream(
+        blobClient.getBlobName(),
+        blobSize,
+        Settings.getRangedReadChunkSizeInMb() * 1024 * 1024,
+        Settings.getRangedReadConcurrency(),
+        (offset, length) -> readRange(blobClient, offset, length));
+  }
+
+  private static byte[] readRange(BlobClient blobClient, long offset, int length) {
+    ByteArrayOutputStream range = new ByteArrayOutputStream(length);
+    blobClient.downloadWithResponse(
+        range, new BlobRange(offset, (long) length), null, null, false, null, Context.NONE);
+    return range.toByteArray();
   }
 
   public static void initClient(String container) throws URISyntaxException, InvalidKeyException {
@@ -64,13 +168,71 @@ public class AzureBlobClientExtension {
     blobContainerClient = blobServiceClient.getBlobContainerClient(container);
   }
 
-  public static List<String> getListOfBlobs(String container) throws InvalidKeyException, URISyntaxException {
-    initClient(container);
-    List<String> listOfBlobs = new ArrayList<>();
-    for (BlobItem blobItem : blobContainerClient.listBlobs()) {
-        // Add container name and blob name using separator
-        listOfBlobs.add(container + Constants.CONTAINER_BLOB_SEPERATOR + blobItem.getName());
+  /** Uploads a local file to an existing container, replacing a blob of the same name. */
+  public static synchronized void uploadFile(String container, String blobName, Path file) {
+    // The service client is shared, the source container client is left as it is
+    if (blobServiceClient == null) {
+      blobServiceClient =
+          new BlobServiceClientBuilder()
+              .connectionString(Settings.getAzureBlobConnectionString())
+              .buildClient();
+    }
+    blobServiceClient
+        .getBlobContainerClient(container)
+        .getBlobClient(blobName)
+        .uploadFromFile(file.toString(), true);
+  }
+
+  /**
+   * Streams the blobs of a container while they are listed. Location is a container name,
+   * optionally followed by the separator and a folder prefix to list from.
+   */
+  public static StoreListing listBlobs(String location)
+      throws InvalidKeyException, URISyntaxException {
+    return listBlobs(location, Settings.getListingRecursive());
+  }
+
+  /**
+   * Streams the blobs of a container while they are listed. Blob storage has no real folders, all
+   * blobs under the folder prefix are listed flat unless the listing is recursive, which walks the
+   * virtual folders concurrently instead.
+   */
+  public static StoreListing listBlobs(String location, boolean isRecursive)
+      throws InvalidKeyException, URISyntaxException {
+    String[] parts = location.split(Pattern.quote(Constants.CONTAINER_BLOB_SEPERATOR), 2);
+    initClient(parts[0]);
+    String prefix = parts.length > 1 ? parts[1] : "";
+    // A folder without its trailing slash would only match the folder itself
+    if (!prefix.isEmpty() && !prefix.endsWith("/")) {
+      prefix += "/";
+    }
+    String rootFolder = parts[0] + Constants.CONTAINER_BLOB_SEPERATOR + prefix;
+    return new StoreListing(rootFolder, AzureBlobClientExtension::listFolder, isRecursive);
+  }
+
+  private static void listFolder(String folder, StoreListing listing) throws InterruptedException {
+    String[] parts = folder.split(Pattern.quote(Constants.CONTAINER_BLOB_SEPERATOR), 2);
+    ListBlobsOptions options =
+        new ListBlobsOptions()
+            .setPrefix(parts[1].isEmpty() ? null : parts[1])
+            .setMaxResultsPerPage(Settings.getMaxFileEntriesToRetrieve());
+    // Pages are fetched lazily while iterating
+    Iterable<BlobItem> blobItems =
+        listing.isRecursive()
+            ? blobContainerClient.listBlobsByHierarchy("/", options, null)
+            : blobContainerClient.listBlobs(options, null);
+    for (BlobItem blobItem : blobItems) {
+      String blob = parts[0] + Constants.CONTAINER_BLOB_SEPERATOR + blobItem.getName();
+      if (Boolean.TRUE.equals(blobItem.isPrefix())) {
+        listing.addFolder(blob);
+      } else {
+        String name = blobItem.getName().substring(blobItem.getName().lastIndexOf('/') + 1);
+        listing.addFile(
+            blob,
+            name,
+            blobItem.getProperties().getContentLength(),
+            blobItem.getProperties().getLastModified().toInstant());
+      }
     }
-    return listOfBlobs;
   }
 }
@@ -34,11 +34,14 @@ import com.microsoft.azure.documentdb.FeedOptions;
 import com.microsoft.azure.documentdb.FeedResponse;
 import com.microsoft.azure.documentdb.Offer;
 import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.PartitionKeyRange;
 import com.microsoft.azure.documentdb.RequestOptions;
 import com.microsoft.azure.documentdb.ResourceResponse;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.apache.http.HttpStatus;
 import org.apache.log4j.Logger;
 
@@ -116,6 +119,24 @@ public class CosmosDbSqlClientExtension {
     return resourceResponse.getResource();
   }
 
+  /** Current partition key ranges of the collection, ranges replaced by a split are left out. */
+  public List<PartitionKeyRange> getPartitionKeyRanges() {
+    String collectionLink =
+        String.format("/dbs/%s/colls/%s", this.databaseName, this.collectionName);
+    FeedResponse<PartitionKeyRange> feedResponse =
+        documentClient.readPartitionKeyRanges(collectionLink, null);
+    List<PartitionKeyRange> partitionKeyRanges =
+        new ArrayList<>(feedResponse.getQueryIterable().toList());
+    Set<String> parents = new HashSet<>();
+    for (PartitionKeyRange partitionKeyRange : partitionKeyRanges) {
+      if (partitionKeyRange.getParents() != null) {
+        parents.addAll(partitionKeyRange.getParents());
+      }
+    }
+    partitionKeyRanges.removeIf(partitionKeyRange -> parents.contains(partitionKeyRange.getId()));
+    return partitionKeyRanges;
+  }
+
   public void createDatabaseIfNotExists() throws DocumentClientException {
     try {
       String dbLink = String.format("/dbs/%s", this.databaseName);
@@ -0,0 +1,193 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+
+/**
+ * Streams the files under a store folder while they are being listed. Folders are listed page by
+ * page and, when listing is recursive, sub folders are walked concurrently. Files are filtered
+ * by name and modified time and handed out through a bounded queue, so queueing can start with
+ * the first page instead of waiting for the whole tree.
+ */
+public class StoreListing implements Iterator<StoreListing.ListedFile> {
+
+  /** A listed file and its length in bytes. */
+  public static class ListedFile {
+    public final String location;
+    public final long length;
+
+    public ListedFile(String location, long length) {
+      this.location = location;
+      this.length = length;
+    }
+  }
+
+  /** Lists one folder, reporting its files and sub folders back to the listing. */
+  public interface FolderLister {
+    void listFolder(String folder, StoreListing listing) throws Exception;
+  }
+
+  private static final Logger logger = Logger.getLogger(StoreListing.class);
+  private static final ListedFile END_OF_LISTING = new ListedFile(null, 0);
+  private final FolderLister folderLister;
+  private final BlockingQueue<ListedFile> files;
+  private final ExecutorService folderListers;
+  private final AtomicInteger foldersInProgress = new AtomicInteger();
+  private final AtomicInteger listedFiles = new AtomicInteger();
+  private final AtomicInteger listedFolders = new AtomicInteger();
+  private final boolean isRecursive;
+  private final String namePrefix = Settings.getListingNamePrefix();
+  private final String nameSuffix = Settings.getListingNameSuffix();
+  private final Instant modifiedAfter = Settings.getListingModifiedAfter();
+  private final Instant modifiedBefore = Settings.getListingModifiedBefore();
+  private volatile Exception listingFailure;
+  private ListedFile nextFile;
+  private boolean isEndOfListing;
+
+  public StoreListing(String rootFolder, FolderLister folderLister) {
+    this(rootFolder, folderLister, Settings.getListingRecursive());
+  }
+
+  public StoreListing(String rootFolder, FolderLister folderLister, boolean isRecursive) {
+    this.folderLister = folderLister;
+    this.isRecursive = isRecursive;
+    this.files = new ArrayBlockingQueue<>(Settings.getListingQueueSize());
+    this.folderListers =
+        Executors.newFixedThreadPool(
+            Settings.getListingThreads(),
+            new ThreadFactoryBuilder().setNameFormat("store-listing-%d").setDaemon(true).build());
+    listFolder(rootFolder);
+  }
+
+  /** Called by the folder lister for every file, blocks while the consumer is behind. */
+  public void addFile(String file, String name, long length, Instant lastModified)
+      throws InterruptedException {
+    if (namePrefix != null && !name.startsWith(namePrefix)) {
+      return;
+    }
+    if (nameSuffix != null && !name.endsWith(nameSuffix)) {
+      return;
+    }
+    if (modifiedAfter != null && !lastModified.isAfter(modifiedAfter)) {
+      return;
+    }
+    if (modifiedBefore != null && !lastModified.isBefore(modifiedBefore)) {
+      return;
+    }
+    files.put(new ListedFile(file, length));
+    listedFiles.incrementAndGet();
+  }
+
+  public boolean isRecursive() {
+    return isRecursive;
+  }
+
+  /** Called by the folder lister for every sub folder, ignored unless listing is recursive. */
+  public void addFolder(String folder) {
+    listedFolders.incrementAndGet();
+    if (isRecursive) {
+      listFolder(folder);
+    }
+  }
+
+  private void listFolder(String folder) {
+    // Sub folders are scheduled before their parent completes, so the count only drops to zero
+    // once the whole tree is listed
+    foldersInProgress.incrementAndGet();
+    folderListers.execute(
+        () -> {
+          try {
+            folderLister.listFolder(folder, this);
+          } catch (Exception e) {
+            logger.error("Listing " + folder + " failed due to " + e.getMessage(), e);
+            listingFailure = e;
+          } finally {
+            if (foldersInProgress.decrementAndGet() == 0) {
+              endListing();
+            }
+          }
+        });
+  }
+
+  private void endListing() {
+    folderListers.shutdown();
+    logger.info(String.format("Listed %d files", listedFiles.get()));
+    if (listedFiles.get() == 0 && listedFolders.get() > 0) {
+      logger.warn(
+          String.format(
+              "Listing found %d folders but no files%s",
+              listedFolders.get(),
+              isRecursive ? "" : ", set listingRecursive to list the files in them"));
+    }
+    try {
+      files.put(END_OF_LISTING);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (nextFile != null) {
+      return true;
+    }
+    if (isEndOfListing) {
+      return false;
+    }
+    try {
+      ListedFile file = files.take();
+      if (file == END_OF_LISTING) {
+        isEndOfListing = true;
+        if (listingFailure != null) {
+          throw new UncheckedIOException(new IOException("Listing failed", listingFailure));
+        }
+        return false;
+      }
+      nextFile = file;
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedIOException(new IOException("Interrupted while listing", e));
+    }
+  }
+
+  @Override
+  public ListedFile next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    ListedFile file = nextFile;
+    nextFile = null;
+    return file;
+  }
+}
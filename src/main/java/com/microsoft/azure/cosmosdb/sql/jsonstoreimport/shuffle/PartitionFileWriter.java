@@ -0,0 +1,115 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the shuffled rows of one partition to partition_id_N/batch_W_S.json, W being the shuffle
+ * worker and S the file sequence. Rows are hashKey,payLoad CSV records as written by the U-SQL
+ * shuffle. Files are rotated once maxFileSize utf-8 bytes are written, rotation happens between
+ * appends so the rows of one append always land in the same file.
+ */
+public class PartitionFileWriter implements Closeable {
+
+  private final Path partitionFolder;
+  private final int workerIndex;
+  private final long maxFileSize;
+  private final int bufferSize;
+  private OutputStream writer;
+  private Path file;
+  private long fileSize;
+  private int fileSequence;
+  private long rowCount;
+
+  public PartitionFileWriter(
+      Path outputFolder, int partitionIndex, int workerIndex, long maxFileSize, int bufferSize) {
+    this.partitionFolder = outputFolder.resolve("partition_id_" + partitionIndex);
+    this.workerIndex = workerIndex;
+    this.maxFileSize = maxFileSize;
+    this.bufferSize = bufferSize;
+  }
+
+  /** Appends a CSV row to a batch of rows before it is written. */
+  public static void appendRow(StringBuilder rows, String hashKey, String payLoad) {
+    appendQuoted(rows, hashKey);
+    rows.append(',');
+    appendQuoted(rows, payLoad);
+    rows.append('\n');
+  }
+
+  private static void appendQuoted(StringBuilder rows, String value) {
+    rows.append('"');
+    int start = 0;
+    int quote;
+    while ((quote = value.indexOf('"', start)) >= 0) {
+      rows.append(value, start, quote + 1).append('"');
+      start = quote + 1;
+    }
+    rows.append(value, start, value.length()).append('"');
+  }
+
+  /**
+   * Writes a batch of rows built with appendRow.
+   *
+   * @return the file closed by rotation, null when the current file is still open.
+   */
+  public Path write(CharSequence rows, int count) throws IOException {
+    // Encoded before the lock is taken, writers are shared by the reader threads
+    byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+    synchronized (this) {
+      if (writer == null) {
+        Files.createDirectories(partitionFolder);
+        file = partitionFolder.resolve("batch_" + workerIndex + "_" + fileSequence++ + ".json");
+        writer = new BufferedOutputStream(Files.newOutputStream(file), bufferSize);
+        fileSize = 0;
+      }
+      writer.write(bytes);
+      fileSize += bytes.length;
+      rowCount += count;
+      return fileSize >= maxFileSize ? closeFile() : null;
+    }
+  }
+
+  public synchronized long getRowCount() {
+    return rowCount;
+  }
+
+  /** @return the last file, null when nothing was written. */
+  public synchronized Path closeFile() throws IOException {
+    if (writer == null) {
+      return null;
+    }
+    writer.close();
+    writer = null;
+    return file;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeFile();
+  }
+}
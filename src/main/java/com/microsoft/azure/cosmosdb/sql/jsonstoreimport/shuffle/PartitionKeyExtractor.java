@@ -0,0 +1,98 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.EffectivePartitionKeyGenerator;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.IPartitionKeyComponent;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.UndefinedPartitionKeyComponent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the partition key of a document, the value at the cosmosDbDataCollectionPkValue path.
+ * The document is scanned with a streaming parser which skips everything off the path, a missing
+ * value is undefined.
+ */
+public class PartitionKeyExtractor {
+
+  private static final JsonFactory jsonFactory = new JsonFactory();
+  private final String[] partitionKeyPath = getPartitionKeyPath();
+
+  private static String[] getPartitionKeyPath() {
+    String partitionKey = Settings.getCosmosDbDataCollectionPkValue();
+    List<String> path = new ArrayList<>();
+    if (partitionKey != null) {
+      for (String part : partitionKey.trim().split("/")) {
+        if (!part.isEmpty()) {
+          path.add(part);
+        }
+      }
+    }
+    if (path.isEmpty()) {
+      throw new IllegalStateException("cosmosDbDataCollectionPkValue is required");
+    }
+    return path.toArray(new String[0]);
+  }
+
+  /** Returns the partition key component, null when it is an object or an array. */
+  public IPartitionKeyComponent extract(String jsonDoc) throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(jsonDoc)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Document is not a json object");
+      }
+      int depth = 0;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        JsonToken value = parser.nextToken();
+        if (!partitionKeyPath[depth].equals(parser.getCurrentName())) {
+          parser.skipChildren();
+          continue;
+        }
+        if (depth < partitionKeyPath.length - 1) {
+          if (value != JsonToken.START_OBJECT) {
+            break;
+          }
+          depth++;
+          continue;
+        }
+        switch (value) {
+          case VALUE_STRING:
+            return EffectivePartitionKeyGenerator.toComponent(parser.getText());
+          case VALUE_NUMBER_INT:
+          case VALUE_NUMBER_FLOAT:
+            return EffectivePartitionKeyGenerator.toComponent(parser.getDoubleValue());
+          case VALUE_TRUE:
+          case VALUE_FALSE:
+            return EffectivePartitionKeyGenerator.toComponent(parser.getBooleanValue());
+          case VALUE_NULL:
+            return EffectivePartitionKeyGenerator.toComponent(null);
+          default:
+            return null;
+        }
+      }
+      return UndefinedPartitionKeyComponent.VALUE;
+    }
+  }
+}
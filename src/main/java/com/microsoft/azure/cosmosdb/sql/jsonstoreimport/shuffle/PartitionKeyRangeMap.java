@@ -0,0 +1,107 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.EffectivePartitionKeyGenerator;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.IPartitionKeyComponent;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.NumberPartitionKeyComponent;
+import com.microsoft.azure.documentdb.PartitionKeyRange;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maps effective partition keys to partition key ranges, numbered from 0 in effective partition
+ * key order. Ranges are either read from the collection or spread evenly over the hash space, the
+ * way the U-SQL GetPartitionKeyByEffectivePartitionKey assigned partition ids.
+ */
+public class PartitionKeyRangeMap {
+
+  private static final BigInteger HASH_V1_SPACE = BigInteger.ONE.shiftLeft(32);
+  // Version 2 hashes have their top 2 bits cleared
+  private static final BigInteger HASH_V2_SPACE = BigInteger.ONE.shiftLeft(126);
+
+  private final String[] minInclusives;
+  private final boolean isHashV2;
+
+  private PartitionKeyRangeMap(String[] minInclusives, boolean isHashV2) {
+    this.minInclusives = minInclusives;
+    this.isHashV2 = isHashV2;
+  }
+
+  /** Splits the hash space into partitionCount ranges of equal width. */
+  public static PartitionKeyRangeMap uniform(int partitionCount, boolean isHashV2) {
+    if (partitionCount <= 0) {
+      throw new IllegalArgumentException("Partition count must be positive: " + partitionCount);
+    }
+    String[] minInclusives = new String[partitionCount];
+    minInclusives[0] = EffectivePartitionKeyGenerator.MINIMUM_INCLUSIVE_EFFECTIVE_PARTITION_KEY;
+    BigInteger hashSpace = isHashV2 ? HASH_V2_SPACE : HASH_V1_SPACE;
+    for (int i = 1; i < partitionCount; i++) {
+      BigInteger boundary =
+          hashSpace.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(partitionCount));
+      minInclusives[i] =
+          isHashV2
+              ? String.format("%032X", boundary)
+              : EffectivePartitionKeyGenerator.toHexEncodedBinaryString(
+                  new NumberPartitionKeyComponent(boundary.longValue()));
+    }
+    return new PartitionKeyRangeMap(minInclusives, isHashV2);
+  }
+
+  /** Uses the current partition key ranges of a collection, in any order. */
+  public static PartitionKeyRangeMap fromRanges(
+      Collection<PartitionKeyRange> partitionKeyRanges, boolean isHashV2) {
+    List<String> minInclusives = new ArrayList<>();
+    for (PartitionKeyRange partitionKeyRange : partitionKeyRanges) {
+      minInclusives.add(partitionKeyRange.getMinInclusive());
+    }
+    if (minInclusives.isEmpty()) {
+      throw new IllegalArgumentException("Collection has no partition key ranges");
+    }
+    minInclusives.sort(String::compareTo);
+    return new PartitionKeyRangeMap(minInclusives.toArray(new String[0]), isHashV2);
+  }
+
+  public int getPartitionCount() {
+    return minInclusives.length;
+  }
+
+  public boolean isHashV2() {
+    return isHashV2;
+  }
+
+  public String getEffectivePartitionKey(IPartitionKeyComponent partitionKey) {
+    return EffectivePartitionKeyGenerator.getEffectivePartitionKey(isHashV2, partitionKey);
+  }
+
+  /** Index of the range holding the effective partition key. */
+  public int getPartitionIndex(String effectivePartitionKey) {
+    int index = Arrays.binarySearch(minInclusives, effectivePartitionKey);
+    return index >= 0 ? index : -index - 2;
+  }
+
+  @Override
+  public String toString() {
+    return (isHashV2 ? "V2 " : "V1 ") + Arrays.toString(minInclusives);
+  }
+}
@@ -0,0 +1,243 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.AdlStoreClientExtension;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.CsvColumnReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import org.apache.log4j.Logger;
+
+/**
+ * External merge sort of one shuffled partition, the local replacement of the U-SQL sort. Rows of
+ * the shuffled files are collected into runs of sortRunSizeInMb, each run is sorted by hash key in
+ * memory and spilled to sortSpillFolder. The runs are then merged, sortMergeFanIn at a time with
+ * extra passes when there are more, into the numbered files of a {@link SortedFileWriter}. A
+ * partition that fits in a single run is written without spilling. With uploadSortOutput set,
+ * every finished file is moved to adlSortedDataFolder.
+ */
+public class PartitionSorter {
+
+  /** Opens a shuffled file of the partition. */
+  public interface FileOpener {
+    Reader open(String file) throws IOException;
+  }
+
+  private interface RecordSink {
+    void accept(SortRecord record) throws IOException;
+  }
+
+  private static final Logger logger = Logger.getLogger(PartitionSorter.class);
+  private static final int RUN_BUFFER_SIZE = 64 * 1024;
+  private final String partitionName;
+  private final Path spillFolder;
+  private final long runSize;
+  private final int mergeFanIn;
+  private final SortedFileWriter sortedFileWriter;
+  private final String uploadFolder;
+  private final Set<Path> spilledRuns = new HashSet<>();
+
+  public PartitionSorter(String partitionName) {
+    this.partitionName = partitionName;
+    this.spillFolder = Paths.get(Settings.getSortSpillFolder());
+    this.runSize = Settings.getSortRunSizeInMb() * 1024L * 1024L;
+    this.mergeFanIn = Math.max(2, Settings.getSortMergeFanIn());
+    this.sortedFileWriter =
+        new SortedFileWriter(
+            Paths.get(Settings.getSortOutputFolder(), partitionName),
+            Settings.getSortedFileSizeInMb() * 1024L * 1024L);
+    this.uploadFolder =
+        Settings.getUploadSortOutput()
+            ? Settings.getAdlSortedDataFolder() + partitionName + "/"
+            : null;
+  }
+
+  /** Sorts the rows of the shuffled files of the partition by hash key. */
+  public void sort(List<String> files, FileOpener fileOpener) throws IOException {
+    final long startTime = System.currentTimeMillis();
+    try {
+      List<Path> runs = new ArrayList<>();
+      List<SortRecord> run = new ArrayList<>();
+      long runBytes = 0;
+      for (String file : files) {
+        try (CsvColumnReader csvColumnReader = new CsvColumnReader(fileOpener.open(file), 1, 0)) {
+          while (csvColumnReader.nextRecord()) {
+            String payLoad = csvColumnReader.getColumnValue();
+            if (payLoad.isEmpty()) {
+              continue;
+            }
+            SortRecord record = SortRecord.of(csvColumnReader.getHashKeyValue(), payLoad);
+            run.add(record);
+            runBytes += record.getSizeInBytes();
+            if (runBytes >= runSize) {
+              runs.add(spill(run));
+              run.clear();
+              runBytes = 0;
+            }
+          }
+        }
+      }
+      if (runs.isEmpty()) {
+        run.sort(SortRecord.BY_HASH_KEY);
+        for (SortRecord record : run) {
+          write(record);
+        }
+      } else {
+        if (!run.isEmpty()) {
+          runs.add(spill(run));
+        }
+        run = null;
+        while (runs.size() > mergeFanIn) {
+          runs = mergePass(runs);
+        }
+        merge(runs, this::write);
+      }
+      upload(sortedFileWriter.closeFile());
+    } finally {
+      sortedFileWriter.close();
+      for (Path spilledRun : spilledRuns) {
+        Files.deleteIfExists(spilledRun);
+      }
+    }
+    logger.info(
+        String.format(
+            "%s sorted %d documents in %d seconds",
+            partitionName,
+            sortedFileWriter.getRowCount(),
+            (System.currentTimeMillis() - startTime) / 1000));
+  }
+
+  private Path spill(List<SortRecord> run) throws IOException {
+    run.sort(SortRecord.BY_HASH_KEY);
+    Path spilledRun = newRun();
+    try (DataOutputStream out = openRun(spilledRun)) {
+      for (SortRecord record : run) {
+        record.write(out);
+      }
+    }
+    logger.info(partitionName + " spilled " + run.size() + " documents to " + spilledRun);
+    return spilledRun;
+  }
+
+  /** Merges groups of mergeFanIn runs into longer runs. */
+  private List<Path> mergePass(List<Path> runs) throws IOException {
+    List<Path> mergedRuns = new ArrayList<>();
+    for (int i = 0; i < runs.size(); i += mergeFanIn) {
+      List<Path> group = runs.subList(i, Math.min(runs.size(), i + mergeFanIn));
+      Path mergedRun = newRun();
+      try (DataOutputStream out = openRun(mergedRun)) {
+        merge(group, record -> record.write(out));
+      }
+      for (Path run : group) {
+        Files.delete(run);
+        spilledRuns.remove(run);
+      }
+      mergedRuns.add(mergedRun);
+    }
+    return mergedRuns;
+  }
+
+  private void merge(List<Path> runs, RecordSink recordSink) throws IOException {
+    PriorityQueue<RunReader> runHeads =
+        new PriorityQueue<>(
+            runs.size(), (a, b) -> SortRecord.BY_HASH_KEY.compare(a.current, b.current));
+    List<RunReader> runReaders = new ArrayList<>();
+    try {
+      for (Path run : runs) {
+        RunReader runReader = new RunReader(run);
+        runReaders.add(runReader);
+        if (runReader.advance()) {
+          runHeads.add(runReader);
+        }
+      }
+      while (!runHeads.isEmpty()) {
+        RunReader runReader = runHeads.poll();
+        recordSink.accept(runReader.current);
+        if (runReader.advance()) {
+          runHeads.add(runReader);
+        }
+      }
+    } finally {
+      for (RunReader runReader : runReaders) {
+        runReader.close();
+      }
+    }
+  }
+
+  private void write(SortRecord record) throws IOException {
+    upload(sortedFileWriter.write(record));
+  }
+
+  private void upload(Path file) throws IOException {
+    if (file == null || uploadFolder == null) {
+      return;
+    }
+    AdlStoreClientExtension.uploadFile(uploadFolder + file.getFileName(), file);
+    Files.delete(file);
+  }
+
+  private Path newRun() throws IOException {
+    Files.createDirectories(spillFolder);
+    Path run = Files.createTempFile(spillFolder, partitionName + "_run_", ".bin");
+    spilledRuns.add(run);
+    return run;
+  }
+
+  private static DataOutputStream openRun(Path run) throws IOException {
+    return new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE));
+  }
+
+  /** Reads a spilled run one record at a time. */
+  private static class RunReader implements Closeable {
+    private final DataInputStream in;
+    private SortRecord current;
+
+    RunReader(Path run) throws IOException {
+      this.in =
+          new DataInputStream(
+              new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_SIZE));
+    }
+
+    boolean advance() throws IOException {
+      current = SortRecord.read(in);
+      return current != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.IPartitionKeyComponent;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.AdlStoreClientExtension;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.RejectOutput;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.RejectOutput.Reason;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.transform.DocumentScreen;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/**
+ * Local replacement of the U-SQL shuffle. Documents are screened, which transforms them and sets
+ * their id and partition key, then assigned to partition key ranges by the effective partition key
+ * of their cosmosDbDataCollectionPkValue field and written, as hashKey and payLoad rows, to one
+ * {@link PartitionFileWriter} per range under shuffleOutputFolder. Rows hold the screened document
+ * so a generated partition key stays the one the row was placed by, ingestion of the sorted files
+ * does not screen them again unless screenSortedData is set. Batches are grouped by range before
+ * they are written, so writers are locked once per batch and range. With uploadShuffleOutput set,
+ * every finished file is moved to adlShuffleFolder.
+ *
+ * <p>The files of a previous run of the same worker are deleted first, a shuffle with failed files
+ * has to be run again as a whole since the failed files may have left some of their rows.
+ */
+public class ShuffleStage implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(ShuffleStage.class);
+  private final PartitionKeyRangeMap partitionKeyRangeMap;
+  private final PartitionFileWriter[] partitionFileWriters;
+  private final PartitionKeyExtractor partitionKeyExtractor = new PartitionKeyExtractor();
+  private final String uploadFolder;
+
+  public ShuffleStage(PartitionKeyRangeMap partitionKeyRangeMap) throws IOException {
+    this.partitionKeyRangeMap = partitionKeyRangeMap;
+    this.uploadFolder = Settings.getUploadShuffleOutput() ? Settings.getAdlShuffleFolder() : null;
+    Path outputFolder = Paths.get(Settings.getShuffleOutputFolder());
+    long maxFileSize = Settings.getShuffleFileSizeInMb() * 1024L * 1024L;
+    int bufferSize = Settings.getShuffleWriteBufferSizeInKb() * 1024;
+    this.partitionFileWriters = new PartitionFileWriter[partitionKeyRangeMap.getPartitionCount()];
+    String filePrefix = "batch_" + Settings.getShuffleWorkerIndex() + "_";
+    for (int i = 0; i < partitionFileWriters.length; i++) {
+      partitionFileWriters[i] =
+          new PartitionFileWriter(
+              outputFolder, i, Settings.getShuffleWorkerIndex(), maxFileSize, bufferSize);
+      deletePreviousRun(outputFolder.resolve("partition_id_" + i), filePrefix);
+      if (uploadFolder != null) {
+        AdlStoreClientExtension.deleteFiles(uploadFolder + "partition_id_" + i, filePrefix);
+      }
+    }
+  }
+
+  private static void deletePreviousRun(Path partitionFolder, String filePrefix)
+      throws IOException {
+    if (!Files.isDirectory(partitionFolder)) {
+      return;
+    }
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(partitionFolder, filePrefix + "*")) {
+      for (Path file : files) {
+        logger.info("Deleting " + file + " of a previous shuffle");
+        Files.delete(file);
+      }
+    }
+  }
+
+  /** Shuffles a batch of documents read from source, rejected documents are left out. */
+  public void shuffle(String source, List<String> jsonDocs) throws IOException {
+    StringBuilder[] rows = new StringBuilder[partitionFileWriters.length];
+    int[] rowCounts = new int[partitionFileWriters.length];
+    for (String jsonDoc : jsonDocs) {
+      String screenedDoc = DocumentScreen.screen(source, jsonDoc);
+      if (screenedDoc == null) {
+        continue;
+      }
+      IPartitionKeyComponent partitionKey;
+      try {
+        partitionKey = partitionKeyExtractor.extract(screenedDoc);
+      } catch (JsonProcessingException e) {
+        RejectOutput.write(source, Reason.MALFORMED_JSON, e.getOriginalMessage(), jsonDoc);
+        continue;
+      }
+      if (partitionKey == null) {
+        RejectOutput.write(
+            source, Reason.BAD_INPUT, "Partition key is an object or an array", jsonDoc);
+        continue;
+      }
+      String hashKey = partitionKeyRangeMap.getEffectivePartitionKey(partitionKey);
+      int partitionIndex = partitionKeyRangeMap.getPartitionIndex(hashKey);
+      if (rows[partitionIndex] == null) {
+        rows[partitionIndex] = new StringBuilder();
+      }
+      PartitionFileWriter.appendRow(rows[partitionIndex], hashKey, screenedDoc);
+      rowCounts[partitionIndex]++;
+    }
+    for (int i = 0; i < rows.length; i++) {
+      if (rows[i] != null) {
+        upload(i, partitionFileWriters[i].write(rows[i], rowCounts[i]));
+      }
+    }
+  }
+
+  private void upload(int partitionIndex, Path file) throws IOException {
+    if (file == null || uploadFolder == null) {
+      return;
+    }
+    AdlStoreClientExtension.uploadFile(
+        uploadFolder + "partition_id_" + partitionIndex + "/" + file.getFileName(), file);
+    Files.delete(file);
+  }
+
+  @Override
+  public void close() throws IOException {
+    long shuffledDocuments = 0;
+    for (int i = 0; i < partitionFileWriters.length; i++) {
+      upload(i, partitionFileWriters[i].closeFile());
+      long rowCount = partitionFileWriters[i].getRowCount();
+      logger.info("P_" + i + " Documents shuffled " + rowCount);
+      shuffledDocuments += rowCount;
+    }
+    logger.info(
+        String.format(
+            "Shuffled %d documents into %d partitions",
+            shuffledDocuments, partitionFileWriters.length));
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+
+/**
+ * A shuffled row held by the external sort. The hex hash key is kept as its bytes, which compare
+ * unsigned in the order of the hex strings, and the document as utf-8. Spilled runs store a
+ * record as the varint length and bytes of the hash key followed by those of the document.
+ */
+class SortRecord {
+
+  static final Comparator<SortRecord> BY_HASH_KEY = (a, b) -> compare(a.hashKey, b.hashKey);
+
+  // Rough per record cost of the objects and references around the two arrays
+  private static final int OVERHEAD_IN_BYTES = 64;
+  private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+  final byte[] hashKey;
+  final byte[] payLoad;
+
+  private SortRecord(byte[] hashKey, byte[] payLoad) {
+    this.hashKey = hashKey;
+    this.payLoad = payLoad;
+  }
+
+  static SortRecord of(String hashKey, String payLoad) throws IOException {
+    if (hashKey.length() % 2 != 0) {
+      throw new IOException("Hash key " + hashKey + " is not hex encoded");
+    }
+    byte[] hashKeyBytes = new byte[hashKey.length() / 2];
+    for (int i = 0; i < hashKeyBytes.length; i++) {
+      int high = Character.digit(hashKey.charAt(i * 2), 16);
+      int low = Character.digit(hashKey.charAt(i * 2 + 1), 16);
+      if (high < 0 || low < 0) {
+        throw new IOException("Hash key " + hashKey + " is not hex encoded");
+      }
+      hashKeyBytes[i] = (byte) (high << 4 | low);
+    }
+    return new SortRecord(hashKeyBytes, payLoad.getBytes(StandardCharsets.UTF_8));
+  }
+
+  long getSizeInBytes() {
+    return hashKey.length + payLoad.length + OVERHEAD_IN_BYTES;
+  }
+
+  /** Appends the hash key as upper case hex. */
+  void writeHashKeyHex(DataOutputStream out) throws IOException {
+    for (byte b : hashKey) {
+      out.write(HEX_DIGITS[(b >> 4) & 0xF]);
+      out.write(HEX_DIGITS[b & 0xF]);
+    }
+  }
+
+  void write(DataOutputStream out) throws IOException {
+    writeVarInt(out, hashKey.length);
+    out.write(hashKey);
+    writeVarInt(out, payLoad.length);
+    out.write(payLoad);
+  }
+
+  /** Reads the next record of a run, null at the end of the run. */
+  static SortRecord read(DataInputStream in) throws IOException {
+    int first = in.read();
+    if (first < 0) {
+      return null;
+    }
+    byte[] hashKey = new byte[readVarInt(in, first)];
+    in.readFully(hashKey);
+    byte[] payLoad = new byte[readVarInt(in, in.read())];
+    in.readFully(payLoad);
+    return new SortRecord(hashKey, payLoad);
+  }
+
+  private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  private static int readVarInt(DataInputStream in, int b) throws IOException {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      if (b < 0) {
+        throw new EOFException("Sort run ends within a record");
+      }
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+      b = in.read();
+    }
+  }
+
+  private static int compare(byte[] a, byte[] b) {
+    int length = Math.min(a.length, b.length);
+    for (int i = 0; i < length; i++) {
+      int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+    return a.length - b.length;
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the sorted rows of one partition to sorted_part_N.json files, numbered from 0 in hash key
+ * order as the ingestion of sorted partitions expects. Rows are rowNumber,payLoad,hashKey CSV
+ * records like the U-SQL sort output, so jsonDocColumnIndexInCsv stays 1. A new file is started
+ * once maxFileSize bytes are written.
+ */
+class SortedFileWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 256 * 1024;
+  private static final byte QUOTE = '"';
+
+  private final Path partitionFolder;
+  private final long maxFileSize;
+  private DataOutputStream out;
+  private Path file;
+  private long fileSize;
+  private int fileSequence;
+  private long rowNumber;
+
+  SortedFileWriter(Path partitionFolder, long maxFileSize) {
+    this.partitionFolder = partitionFolder;
+    this.maxFileSize = maxFileSize;
+  }
+
+  /** @return the file closed by rotation, null when the current file is still open. */
+  Path write(SortRecord record) throws IOException {
+    if (out == null) {
+      Files.createDirectories(partitionFolder);
+      file = partitionFolder.resolve("sorted_part_" + fileSequence++ + ".json");
+      out =
+          new DataOutputStream(
+              new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+      fileSize = 0;
+    }
+    byte[] rowNumberBytes = Long.toString(++rowNumber).getBytes(StandardCharsets.US_ASCII);
+    out.write(rowNumberBytes);
+    out.write(',');
+    out.write(QUOTE);
+    byte[] payLoad = record.payLoad;
+    int segmentStart = 0;
+    int quotes = 0;
+    for (int i = 0; i < payLoad.length; i++) {
+      // A quote byte is never part of a multi byte utf-8 sequence
+      if (payLoad[i] == QUOTE) {
+        out.write(payLoad, segmentStart, i + 1 - segmentStart);
+        out.write(QUOTE);
+        segmentStart = i + 1;
+        quotes++;
+      }
+    }
+    out.write(payLoad, segmentStart, payLoad.length - segmentStart);
+    out.write(QUOTE);
+    out.write(',');
+    out.write(QUOTE);
+    record.writeHashKeyHex(out);
+    out.write(QUOTE);
+    out.write('\n');
+    // Row number, payload and hash key with their quotes, two commas and the new line
+    fileSize += rowNumberBytes.length + payLoad.length + quotes + record.hashKey.length * 2 + 7;
+    return fileSize >= maxFileSize ? closeFile() : null;
+  }
+
+  long getRowCount() {
+    return rowNumber;
+  }
+
+  /** @return the last file, null when nothing was written since the last rotation. */
+  Path closeFile() throws IOException {
+    if (out == null) {
+      return null;
+    }
+    out.close();
+    out = null;
+    return file;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeFile();
+  }
+}
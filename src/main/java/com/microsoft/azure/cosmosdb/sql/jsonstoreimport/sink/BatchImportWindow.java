@@ -0,0 +1,139 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntityImportResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps up to inFlightBatchesPerFile bulk imports of a file running at once, so the next batch
+ * is already importing while the slowest partition of the previous one finishes. Submitting waits
+ * for a free slot, which holds the reader back. Responses are collected as the imports complete,
+ * once a batch fails nothing more is submitted. The imports run on a pool shared by all files.
+ * A window left early has to be closed, so no import of the file is still running afterwards.
+ */
+public class BatchImportWindow {
+
+  private static volatile ExecutorService pool;
+
+  private final int windowSize = Math.max(1, Settings.getInFlightBatchesPerFile());
+  private final CompletionService<JsonStoreEntityImportResponse> completionService =
+      new ExecutorCompletionService<>(getPool());
+  private final List<JsonStoreEntityImportResponse> responses = new ArrayList<>();
+  private final List<Future<JsonStoreEntityImportResponse>> inFlight = new ArrayList<>();
+  private boolean isError;
+  private Exception failure;
+
+  /**
+   * Starts a bulk import once a slot is free.
+   *
+   * @return false when a batch failed, the import is not submitted then.
+   */
+  public boolean submit(Callable<JsonStoreEntityImportResponse> batchImport)
+      throws InterruptedException {
+    while (inFlight.size() >= windowSize) {
+      awaitOne();
+    }
+    if (isError()) {
+      return false;
+    }
+    inFlight.add(completionService.submit(batchImport));
+    return true;
+  }
+
+  /**
+   * Waits for the imports in flight, an import that threw is rethrown.
+   *
+   * @return the responses of all imports, in order of completion.
+   */
+  public List<JsonStoreEntityImportResponse> await() throws Exception {
+    while (!inFlight.isEmpty()) {
+      awaitOne();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return responses;
+  }
+
+  public boolean isError() {
+    return isError || failure != null;
+  }
+
+  /**
+   * Waits for the imports still in flight when the file is abandoned, such as after its reader
+   * failed or the thread was interrupted, so they no longer use the reader or the reject output.
+   * Their responses and failures are dropped, the interrupt status is kept.
+   */
+  public void close() {
+    for (Future<JsonStoreEntityImportResponse> batchImport : inFlight) {
+      try {
+        Uninterruptibles.getUninterruptibly(batchImport);
+      } catch (ExecutionException | CancellationException e) {
+        // The file failed already
+      }
+    }
+    inFlight.clear();
+  }
+
+  private void awaitOne() throws InterruptedException {
+    Future<JsonStoreEntityImportResponse> completed = completionService.take();
+    inFlight.remove(completed);
+    try {
+      JsonStoreEntityImportResponse response = completed.get();
+      responses.add(response);
+      if (response.isError()) {
+        isError = true;
+      }
+    } catch (ExecutionException e) {
+      if (failure == null) {
+        failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      }
+    }
+  }
+
+  private static ExecutorService getPool() {
+    if (pool == null) {
+      synchronized (BatchImportWindow.class) {
+        if (pool == null) {
+          pool =
+              Executors.newCachedThreadPool(
+                  new ThreadFactoryBuilder()
+                      .setNameFormat("batch-import-%d")
+                      .setDaemon(true)
+                      .build());
+        }
+      }
+    }
+    return pool;
+  }
+}
@@ -0,0 +1,146 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntityImportResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.log4j.Logger;
+
+/**
+ * Sizes the batches handed to the bulk importer from the RUs the imports consume, additive
+ * increase while the collection is below adaptiveBatchTargetRuPercent of its provisioned
+ * throughput, multiplicative decrease once imports are congested. The bulk importer retries
+ * throttled requests itself, so throttling only shows as imports slowing down: the RU/s an import
+ * achieves falling, or the time it takes per document rising, well below the best seen so far.
+ * Imports of all files report to the same controller as they share the throughput, the size is
+ * adjusted at most every few seconds so the batches in flight are seen before the next change.
+ */
+public class BatchSizeController {
+
+  private static final long ADJUSTMENT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+  private static final double DECREASE_FACTOR = 0.5;
+  // Share of the best import rate below which imports count as congested
+  private static final double CONGESTION_RATIO = 0.7;
+
+  private static final Logger logger = Logger.getLogger(BatchSizeController.class);
+  private final int minBatchSize;
+  private final int maxBatchSize;
+  private final int batchSizeIncrease;
+  private final double targetRequestUnitsPerSecond;
+  private final LongSupplier nanoClock;
+  private volatile int batchSize;
+  private long windowStart;
+  private double windowRequestUnits;
+  private long windowDocuments;
+  private long windowImportNanos;
+  private double bestImportRequestUnitsPerSecond;
+  private double bestImportNanosPerDocument;
+
+  /**
+   * @param provisionedThroughput RU/s of the collection, without it the size grows until imports
+   *     are congested.
+   */
+  public BatchSizeController(int initialBatchSize, int provisionedThroughput) {
+    this(
+        initialBatchSize,
+        Settings.getAdaptiveBatchMinSize(),
+        Settings.getAdaptiveBatchMaxSize(),
+        Settings.getAdaptiveBatchIncrease(),
+        provisionedThroughput * Settings.getAdaptiveBatchTargetRuPercent() / 100.0,
+        System::nanoTime);
+  }
+
+  BatchSizeController(
+      int initialBatchSize,
+      int minBatchSize,
+      int maxBatchSize,
+      int batchSizeIncrease,
+      double targetRequestUnitsPerSecond,
+      LongSupplier nanoClock) {
+    this.minBatchSize = Math.max(1, minBatchSize);
+    this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+    this.batchSizeIncrease = Math.max(1, batchSizeIncrease);
+    this.targetRequestUnitsPerSecond = targetRequestUnitsPerSecond;
+    this.nanoClock = nanoClock;
+    this.batchSize = Math.min(this.maxBatchSize, Math.max(this.minBatchSize, initialBatchSize));
+    this.windowStart = nanoClock.getAsLong();
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public synchronized void record(JsonStoreEntityImportResponse response) {
+    windowRequestUnits += response.getTotalRequestUnitsConsumed();
+    windowDocuments += response.getNumberOfDocumentsImported();
+    windowImportNanos += response.getTotalTimeTakenInNanos();
+    long now = nanoClock.getAsLong();
+    long elapsedNanos = now - windowStart;
+    if (elapsedNanos < ADJUSTMENT_INTERVAL_NANOS || windowDocuments == 0) {
+      return;
+    }
+    double requestUnitsPerSecond = windowRequestUnits * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    double importRequestUnitsPerSecond =
+        windowRequestUnits * TimeUnit.SECONDS.toNanos(1) / Math.max(1, windowImportNanos);
+    double importNanosPerDocument = (double) windowImportNanos / windowDocuments;
+    boolean isCongested =
+        bestImportNanosPerDocument > 0
+            && (importRequestUnitsPerSecond < bestImportRequestUnitsPerSecond * CONGESTION_RATIO
+                || importNanosPerDocument * CONGESTION_RATIO > bestImportNanosPerDocument);
+    int previousBatchSize = batchSize;
+    if (isCongested) {
+      batchSize = Math.max(minBatchSize, (int) (batchSize * DECREASE_FACTOR));
+      // Imports of the smaller batches are measured against the congested rate from now on
+      bestImportRequestUnitsPerSecond = importRequestUnitsPerSecond;
+      bestImportNanosPerDocument = importNanosPerDocument;
+    } else {
+      bestImportRequestUnitsPerSecond =
+          Math.max(bestImportRequestUnitsPerSecond, importRequestUnitsPerSecond);
+      bestImportNanosPerDocument =
+          bestImportNanosPerDocument > 0
+              ? Math.min(bestImportNanosPerDocument, importNanosPerDocument)
+              : importNanosPerDocument;
+      if (targetRequestUnitsPerSecond <= 0
+          || requestUnitsPerSecond < targetRequestUnitsPerSecond) {
+        batchSize = Math.min(maxBatchSize, batchSize + batchSizeIncrease);
+      }
+    }
+    if (batchSize != previousBatchSize) {
+      logger.info(
+          String.format(
+              "Batch size %d instead of %d, %.0f RU/s of %.0f targeted%s",
+              batchSize,
+              previousBatchSize,
+              requestUnitsPerSecond,
+              targetRequestUnitsPerSecond,
+              isCongested
+                  ? String.format(
+                      ", imports slowed to %.0f RU/s and %.2f ms per document",
+                      importRequestUnitsPerSecond, importNanosPerDocument / 1e6)
+                  : ""));
+    }
+    windowStart = now;
+    windowRequestUnits = 0;
+    windowDocuments = 0;
+    windowImportNanos = 0;
+  }
+}
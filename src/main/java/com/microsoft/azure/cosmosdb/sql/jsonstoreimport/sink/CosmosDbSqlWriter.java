@@ -19,8 +19,14 @@
 
 package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink;
 
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle.PartitionKeyRangeMap;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.RejectOutput.Reason;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntityImportResponse;
+import com.microsoft.azure.documentdb.bulkexecutor.BulkImportFailure;
+import com.microsoft.azure.documentdb.bulkexecutor.BulkImportResponse;
 import com.microsoft.azure.documentdb.bulkexecutor.DocumentBulkExecutor;
+import java.util.ArrayList;
 import java.util.List;
 import org.apache.log4j.Logger;
 
@@ -29,16 +35,106 @@ public class CosmosDbSqlWriter {
   private final Logger logger = Logger.getLogger(CosmosDbSqlWriter.class);
 
   public JsonStoreEntityImportResponse ingestJsonStoreEntity(
-      List<String> jsonDocuments, DocumentBulkExecutor bulkImporter) throws Exception {
+      String location, List<String> jsonDocuments, DocumentBulkExecutor bulkImporter)
+      throws Exception {
+    return ingestJsonStoreEntity(location, jsonDocuments, bulkImporter, null);
+  }
+
+  /**
+   * Imports the documents, the documents that fail because their partition was split are imported
+   * again in place. The bulk importer looks the ranges up on every import, the cache, when given,
+   * is refreshed so routing follows the split as well.
+   */
+  public JsonStoreEntityImportResponse ingestJsonStoreEntity(
+      String location,
+      List<String> jsonDocuments,
+      DocumentBulkExecutor bulkImporter,
+      PartitionKeyRangeCache partitionKeyRangeCache)
+      throws Exception {
     logger.info("Initiating CosmosDb import...");
     logger.info("Writing documents to CosmosDb");
-    com.microsoft.azure.documentdb.bulkexecutor.BulkImportResponse bulkImportResponse =
-        bulkImporter.importAll(jsonDocuments, true, true, null);
+    PartitionKeyRangeMap partitionKeyRangeMap =
+        partitionKeyRangeCache != null ? partitionKeyRangeCache.get() : null;
+    BulkImportResponse bulkImportResponse = bulkImporter.importAll(jsonDocuments, true, true, null);
     logger.info(
         "Number of documents inserted: " + bulkImportResponse.getNumberOfDocumentsImported());
     logger.info("Import total time: " + bulkImportResponse.getTotalTimeTaken());
     logger.info(
         "Total request unit consumed: " + bulkImportResponse.getTotalRequestUnitsConsumed());
-    return new JsonStoreEntityImportResponse(bulkImportResponse, jsonDocuments.size());
+    JsonStoreEntityImportResponse jsonStoreEntityImportResponse =
+        new JsonStoreEntityImportResponse(bulkImportResponse, jsonDocuments.size());
+    writeBadInputDocuments(location, bulkImportResponse, jsonStoreEntityImportResponse);
+
+    List<String> importedDocuments = jsonDocuments;
+    List<String> splitDocuments = getSplitDocuments(jsonDocuments, bulkImportResponse);
+    for (int attempt = 1;
+        !splitDocuments.isEmpty() && attempt <= Settings.getPartitionSplitRetryAttempts();
+        attempt++) {
+      logger.warn(
+          String.format(
+              "%d documents of %s hit a partition split, importing them again, attempt %d",
+              splitDocuments.size(), location, attempt));
+      if (partitionKeyRangeCache != null) {
+        partitionKeyRangeMap = partitionKeyRangeCache.refresh(partitionKeyRangeMap);
+      }
+      // Imports of a batch retried as a whole are counted again by the retry
+      int reimportedDocuments =
+          splitDocuments == importedDocuments
+              ? bulkImportResponse.getNumberOfDocumentsImported()
+              : 0;
+      bulkImportResponse = bulkImporter.importAll(splitDocuments, true, true, null);
+      jsonStoreEntityImportResponse.addRetryResponse(bulkImportResponse, reimportedDocuments);
+      writeBadInputDocuments(location, bulkImportResponse, jsonStoreEntityImportResponse);
+      importedDocuments = splitDocuments;
+      splitDocuments = getSplitDocuments(splitDocuments, bulkImportResponse);
+    }
+    return jsonStoreEntityImportResponse;
+  }
+
+  // Documents the bulk importer could not send go to the rejects instead of failing the file
+  private void writeBadInputDocuments(
+      String location,
+      BulkImportResponse bulkImportResponse,
+      JsonStoreEntityImportResponse jsonStoreEntityImportResponse) {
+    List<Object> badInputDocuments = bulkImportResponse.getBadInputDocuments();
+    if (badInputDocuments == null || badInputDocuments.isEmpty()) {
+      return;
+    }
+    for (Object badInputDocument : badInputDocuments) {
+      RejectOutput.write(
+          location,
+          Reason.BAD_INPUT,
+          "Rejected by the bulk importer",
+          String.valueOf(badInputDocument));
+    }
+    jsonStoreEntityImportResponse.setNumberOfDocumentsRejected(
+        jsonStoreEntityImportResponse.getNumberOfDocumentsRejected() + badInputDocuments.size());
+  }
+
+  /**
+   * The documents that failed because of a partition split. When the bulk importer only reports
+   * the split as an error, all documents are imported again, imports are upserts so that is safe.
+   */
+  private static List<String> getSplitDocuments(
+      List<String> jsonDocuments, BulkImportResponse bulkImportResponse) {
+    List<String> splitDocuments = new ArrayList<>();
+    List<BulkImportFailure> failedImports = bulkImportResponse.getFailedImports();
+    if (failedImports != null) {
+      for (BulkImportFailure failedImport : failedImports) {
+        if (PartitionKeyRangeCache.isPartitionSplit(failedImport.getBulkImportFailureException())) {
+          splitDocuments.addAll(failedImport.getDocumentsFailedToImport());
+        }
+      }
+    }
+    if (splitDocuments.isEmpty()
+        && bulkImportResponse.getNumberOfDocumentsImported() < jsonDocuments.size()
+        && bulkImportResponse.getErrors() != null
+        && bulkImportResponse
+            .getErrors()
+            .stream()
+            .anyMatch(PartitionKeyRangeCache::isPartitionSplit)) {
+      return jsonDocuments;
+    }
+    return splitDocuments;
   }
 }
@@ -0,0 +1,90 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.CosmosDbSqlClientExtension;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle.PartitionKeyRangeMap;
+import com.microsoft.azure.documentdb.DocumentClientException;
+import org.apache.http.HttpStatus;
+import org.apache.log4j.Logger;
+
+/**
+ * The partition key ranges of the data collection, read once and read again only after a
+ * partition split is seen. A refresh replaces the range map, the clients and the bulk importer are
+ * kept.
+ */
+public class PartitionKeyRangeCache {
+
+  // Sub status codes of a 410 response when the range of a request is gone
+  private static final int PARTITION_KEY_RANGE_GONE = 1002;
+  private static final int COMPLETING_SPLIT = 1007;
+  private static final int COMPLETING_PARTITION_MIGRATION = 1008;
+
+  private static final Logger logger = Logger.getLogger(PartitionKeyRangeCache.class);
+  private final CosmosDbSqlClientExtension ingestionClient;
+  private final boolean isHashV2;
+  private PartitionKeyRangeMap partitionKeyRangeMap;
+
+  public PartitionKeyRangeCache(CosmosDbSqlClientExtension ingestionClient, boolean isHashV2)
+      throws DocumentClientException {
+    this.ingestionClient = ingestionClient;
+    this.isHashV2 = isHashV2;
+    this.partitionKeyRangeMap =
+        PartitionKeyRangeMap.fromRanges(ingestionClient.getPartitionKeyRanges(), isHashV2);
+  }
+
+  /** @return true when the failure, or one of its causes, is a partition split. */
+  public static boolean isPartitionSplit(Throwable failure) {
+    for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+      if (cause instanceof DocumentClientException) {
+        DocumentClientException e = (DocumentClientException) cause;
+        if (e.getStatusCode() == HttpStatus.SC_GONE
+            && (e.getSubStatusCode() == PARTITION_KEY_RANGE_GONE
+                || e.getSubStatusCode() == COMPLETING_SPLIT
+                || e.getSubStatusCode() == COMPLETING_PARTITION_MIGRATION)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  public synchronized PartitionKeyRangeMap get() {
+    return partitionKeyRangeMap;
+  }
+
+  /**
+   * Reads the ranges again unless another thread already did since stale was taken.
+   *
+   * @return the current ranges.
+   */
+  public synchronized PartitionKeyRangeMap refresh(PartitionKeyRangeMap stale)
+      throws DocumentClientException {
+    if (partitionKeyRangeMap == stale) {
+      partitionKeyRangeMap =
+          PartitionKeyRangeMap.fromRanges(ingestionClient.getPartitionKeyRanges(), isHashV2);
+      logger.info(
+          String.format(
+              "Partition key ranges refreshed, %d ranges instead of %d",
+              partitionKeyRangeMap.getPartitionCount(), stale.getPartitionCount()));
+    }
+    return partitionKeyRangeMap;
+  }
+}
@@ -0,0 +1,253 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.IPartitionKeyComponent;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle.PartitionKeyExtractor;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.shuffle.PartitionKeyRangeMap;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntityImportResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+
+/**
+ * Groups the documents of a file by partition key range before they are bulk imported, so an
+ * import call reaches few physical partitions instead of all of them. Every range has a bucket
+ * which is handed out once it holds routingBatchSize documents. Buckets older than
+ * routingMaxBatchAgeInSeconds, and all buckets at the end of the file, are handed out together in
+ * batches of up to routingBatchSize. When more than routingMaxBufferedDocuments are held the
+ * largest bucket is handed out. Documents whose partition key cannot be read get a bucket of
+ * their own and are left for the bulk importer to reject. Import statistics are kept per range,
+ * so hot ranges show up in the log. After a split the documents held are routed to the new ranges.
+ */
+public class PartitionKeyRangeRouter {
+
+  /**
+   * Documents of one range, or of several ranges when rangeIndex is -1. The range index refers to
+   * the ranges the batch was routed by.
+   */
+  public static class RoutedBatch {
+    public final int rangeIndex;
+    public final List<String> jsonDocs;
+    private final PartitionKeyRangeMap partitionKeyRangeMap;
+
+    RoutedBatch(int rangeIndex, List<String> jsonDocs, PartitionKeyRangeMap partitionKeyRangeMap) {
+      this.rangeIndex = rangeIndex;
+      this.jsonDocs = jsonDocs;
+      this.partitionKeyRangeMap = partitionKeyRangeMap;
+    }
+  }
+
+  private static class RangeStatistics {
+    private int batches;
+    private long documents;
+    private double requestUnits;
+    private long elapsedMillis;
+  }
+
+  private static final Logger logger = Logger.getLogger(PartitionKeyRangeRouter.class);
+  private final String location;
+  private final PartitionKeyRangeCache partitionKeyRangeCache;
+  private final PartitionKeyExtractor partitionKeyExtractor = new PartitionKeyExtractor();
+  private int batchSize;
+  private final long maxBatchAgeNanos;
+  private final int maxBufferedDocuments;
+  private final List<List<String>> buckets = new ArrayList<>();
+  private PartitionKeyRangeMap partitionKeyRangeMap;
+  private long[] bucketStartTimes;
+  private RangeStatistics[] rangeStatistics;
+  private int bufferedDocuments;
+
+  public PartitionKeyRangeRouter(String location, PartitionKeyRangeCache partitionKeyRangeCache) {
+    this.location = location;
+    this.partitionKeyRangeCache = partitionKeyRangeCache;
+    int routingBatchSize = Settings.getRoutingBatchSize();
+    this.batchSize = routingBatchSize > 0 ? routingBatchSize : Settings.getIngestionBatchSize();
+    this.maxBatchAgeNanos = TimeUnit.SECONDS.toNanos(Settings.getRoutingMaxBatchAgeInSeconds());
+    this.maxBufferedDocuments = Settings.getRoutingMaxBufferedDocuments();
+    setRanges(partitionKeyRangeCache.get());
+  }
+
+  private void setRanges(PartitionKeyRangeMap partitionKeyRangeMap) {
+    this.partitionKeyRangeMap = partitionKeyRangeMap;
+    int rangeCount = partitionKeyRangeMap.getPartitionCount();
+    buckets.clear();
+    // The last bucket holds the documents without a readable partition key
+    for (int i = 0; i <= rangeCount; i++) {
+      buckets.add(new ArrayList<>());
+    }
+    this.bucketStartTimes = new long[rangeCount + 1];
+    this.rangeStatistics = new RangeStatistics[rangeCount];
+    for (int i = 0; i < rangeCount; i++) {
+      rangeStatistics[i] = new RangeStatistics();
+    }
+  }
+
+  /** Changes the size of the batches handed out from now on. */
+  public void setBatchSize(int batchSize) {
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  /** Adds a batch read from the file, returns the batches that are ready to be imported. */
+  public List<RoutedBatch> route(List<String> jsonDocs) {
+    List<RoutedBatch> routedBatches = new ArrayList<>();
+    long now = System.nanoTime();
+    followSplit(now, routedBatches);
+    for (String jsonDoc : jsonDocs) {
+      add(jsonDoc, now, routedBatches);
+    }
+    routedBatches.addAll(takeBuckets(now, maxBatchAgeNanos));
+    return routedBatches;
+  }
+
+  /** Hands out all documents still held, at the end of the file. */
+  public List<RoutedBatch> flush() {
+    List<RoutedBatch> routedBatches = new ArrayList<>();
+    long now = System.nanoTime();
+    followSplit(now, routedBatches);
+    routedBatches.addAll(takeBuckets(now, 0));
+    return routedBatches;
+  }
+
+  private void add(String jsonDoc, long now, List<RoutedBatch> routedBatches) {
+    int bucketIndex = getBucketIndex(jsonDoc);
+    List<String> bucket = buckets.get(bucketIndex);
+    if (bucket.isEmpty()) {
+      bucketStartTimes[bucketIndex] = now;
+    }
+    bucket.add(jsonDoc);
+    bufferedDocuments++;
+    if (bucket.size() >= batchSize) {
+      routedBatches.add(takeBucket(bucketIndex));
+    } else if (bufferedDocuments > maxBufferedDocuments) {
+      routedBatches.add(takeBucket(getLargestBucketIndex()));
+    }
+  }
+
+  /** Routes the documents held again once the cache holds the ranges of a split. */
+  private synchronized void followSplit(long now, List<RoutedBatch> routedBatches) {
+    PartitionKeyRangeMap currentRanges = partitionKeyRangeCache.get();
+    if (currentRanges == partitionKeyRangeMap) {
+      return;
+    }
+    // Statistics of the old ranges are logged, the range indexes change
+    logStatistics();
+    List<String> heldDocs = new ArrayList<>(bufferedDocuments);
+    for (List<String> bucket : buckets) {
+      heldDocs.addAll(bucket);
+    }
+    bufferedDocuments = 0;
+    setRanges(currentRanges);
+    for (String jsonDoc : heldDocs) {
+      add(jsonDoc, now, routedBatches);
+    }
+  }
+
+  public synchronized void record(
+      RoutedBatch routedBatch, JsonStoreEntityImportResponse response, long elapsedMillis) {
+    // Batches routed before a split are not counted against the new ranges
+    if (routedBatch.rangeIndex < 0 || routedBatch.partitionKeyRangeMap != partitionKeyRangeMap) {
+      return;
+    }
+    RangeStatistics statistics = rangeStatistics[routedBatch.rangeIndex];
+    statistics.batches++;
+    statistics.documents += response.getNumberOfDocumentsImported();
+    statistics.requestUnits += response.getTotalRequestUnitsConsumed();
+    statistics.elapsedMillis += elapsedMillis;
+  }
+
+  public synchronized void logStatistics() {
+    for (int i = 0; i < rangeStatistics.length; i++) {
+      RangeStatistics statistics = rangeStatistics[i];
+      if (statistics.batches == 0) {
+        continue;
+      }
+      logger.info(
+          String.format(
+              "%s R_%d imported %d documents in %d batches, %.0f RUs, %.0f RU/s",
+              location,
+              i,
+              statistics.documents,
+              statistics.batches,
+              statistics.requestUnits,
+              statistics.requestUnits * 1000 / Math.max(1, statistics.elapsedMillis)));
+    }
+  }
+
+  private int getBucketIndex(String jsonDoc) {
+    IPartitionKeyComponent partitionKey;
+    try {
+      partitionKey = partitionKeyExtractor.extract(jsonDoc);
+    } catch (IOException e) {
+      partitionKey = null;
+    }
+    if (partitionKey == null) {
+      return rangeStatistics.length;
+    }
+    return partitionKeyRangeMap.getPartitionIndex(
+        partitionKeyRangeMap.getEffectivePartitionKey(partitionKey));
+  }
+
+  private int getLargestBucketIndex() {
+    int largestBucketIndex = 0;
+    for (int i = 1; i < buckets.size(); i++) {
+      if (buckets.get(i).size() > buckets.get(largestBucketIndex).size()) {
+        largestBucketIndex = i;
+      }
+    }
+    return largestBucketIndex;
+  }
+
+  private RoutedBatch takeBucket(int bucketIndex) {
+    List<String> bucket = buckets.get(bucketIndex);
+    buckets.set(bucketIndex, new ArrayList<>());
+    bufferedDocuments -= bucket.size();
+    return new RoutedBatch(
+        bucketIndex < rangeStatistics.length ? bucketIndex : -1, bucket, partitionKeyRangeMap);
+  }
+
+  /** Takes the buckets at least minAgeNanos old, small buckets are combined. */
+  private List<RoutedBatch> takeBuckets(long now, long minAgeNanos) {
+    List<RoutedBatch> routedBatches = new ArrayList<>();
+    RoutedBatch combinedBatch = null;
+    for (int i = 0; i < buckets.size(); i++) {
+      if (buckets.get(i).isEmpty() || now - bucketStartTimes[i] < minAgeNanos) {
+        continue;
+      }
+      RoutedBatch routedBatch = takeBucket(i);
+      if (combinedBatch == null) {
+        combinedBatch = routedBatch;
+      } else if (combinedBatch.jsonDocs.size() + routedBatch.jsonDocs.size() > batchSize) {
+        routedBatches.add(combinedBatch);
+        combinedBatch = routedBatch;
+      } else {
+        combinedBatch.jsonDocs.addAll(routedBatch.jsonDocs);
+        combinedBatch = new RoutedBatch(-1, combinedBatch.jsonDocs, partitionKeyRangeMap);
+      }
+    }
+    if (combinedBatch != null) {
+      routedBatches.add(combinedBatch);
+    }
+    return routedBatches;
+  }
+}
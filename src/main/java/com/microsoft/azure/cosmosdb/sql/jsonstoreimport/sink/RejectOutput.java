@@ -0,0 +1,146 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.AzureBlobClientExtension;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+
+/**
+ * Side channel for documents that are not imported. Every source file gets its own json lines
+ * file in rejectOutputFolder, holding one record per rejected document with the reason, a detail
+ * message and the document text. The file is only created once a document is rejected, and it is
+ * uploaded to rejectOutputBlobContainer when that is set and the source file is closed, once it
+ * has been imported.
+ */
+public class RejectOutput {
+
+  /** Reason a document was rejected. */
+  public enum Reason {
+    MALFORMED_JSON,
+    TRANSFORM_FAILED,
+    OVERSIZE,
+    BAD_INPUT
+  }
+
+  private static final Logger logger = Logger.getLogger(RejectOutput.class);
+  private static final Map<String, RejectFile> rejectFiles = new HashMap<>();
+
+  public static void write(String source, Reason reason, String detail, String jsonDoc) {
+    RejectFile rejectFile;
+    synchronized (rejectFiles) {
+      rejectFile = rejectFiles.computeIfAbsent(source, RejectFile::new);
+    }
+    JSONObject reject = new JSONObject();
+    reject.put("source", source);
+    reject.put("reason", reason.name());
+    reject.put("detail", detail);
+    reject.put("document", jsonDoc);
+    rejectFile.append(reason, reject.toString());
+  }
+
+  /**
+   * Closes the rejects of a source file, uploading them when a blob container is configured.
+   *
+   * @return documents rejected before the import, bad input rejected by the bulk importer is
+   *     counted by the import responses.
+   */
+  public static int close(String source) {
+    RejectFile rejectFile;
+    synchronized (rejectFiles) {
+      rejectFile = rejectFiles.remove(source);
+    }
+    return rejectFile != null ? rejectFile.close() : 0;
+  }
+
+  private static class RejectFile {
+    private final String source;
+    private final Path path;
+    private BufferedWriter writer;
+    private int rejectedDocuments;
+    private int screenedOutDocuments;
+
+    RejectFile(String source) {
+      this.source = source;
+      this.path = Paths.get(Settings.getRejectOutputFolder(), toFileName(source));
+    }
+
+    synchronized void append(Reason reason, String reject) {
+      try {
+        if (writer == null) {
+          Files.createDirectories(path.getParent());
+          writer =
+              Files.newBufferedWriter(
+                  path,
+                  StandardCharsets.UTF_8,
+                  StandardOpenOption.CREATE,
+                  StandardOpenOption.APPEND);
+        }
+        writer.write(reject);
+        writer.newLine();
+        rejectedDocuments++;
+        if (reason != Reason.BAD_INPUT) {
+          screenedOutDocuments++;
+        }
+      } catch (IOException e) {
+        logger.error("Writing reject of " + source + " to " + path + " failed " + e.getMessage());
+      }
+    }
+
+    synchronized int close() {
+      if (writer == null) {
+        return screenedOutDocuments;
+      }
+      try {
+        writer.close();
+        writer = null;
+        logger.warn(rejectedDocuments + " documents of " + source + " were rejected to " + path);
+        String blobContainer = Settings.getRejectOutputBlobContainer();
+        if (blobContainer != null) {
+          AzureBlobClientExtension.uploadFile(blobContainer, path.getFileName().toString(), path);
+        }
+      } catch (Exception e) {
+        logger.error("Closing rejects of " + source + " failed " + e.getMessage());
+      }
+      return screenedOutDocuments;
+    }
+
+    // Url encoding keeps distinct sources such as a/b and a_b apart
+    private static String toFileName(String source) {
+      try {
+        return URLEncoder.encode(source, "UTF-8").replace("*", "%2A") + ".rejects.jsonl";
+      } catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
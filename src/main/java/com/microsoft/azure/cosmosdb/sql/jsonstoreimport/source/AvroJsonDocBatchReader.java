@@ -0,0 +1,208 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.log4j.Logger;
+
+/**
+ * Streams records of an Avro container file block by block and writes them as json following
+ * their schema. Unions are written as their value, bytes and fixed as base64, decimals as json
+ * numbers and date, time and timestamp logical types as ISO-8601 strings.
+ */
+public class AvroJsonDocBatchReader extends JsonDocBatchReader {
+
+  private static final Logger logger = Logger.getLogger(AvroJsonDocBatchReader.class);
+  private static final JsonFactory jsonFactory = new JsonFactory();
+  private final String location;
+  private final DataFileStream<GenericRecord> records;
+  private final StringWriter jsonDocWriter = new StringWriter();
+  private final JsonGenerator jsonDocGenerator;
+  private final int batchSize;
+  private GenericRecord reusedRecord;
+  private long totalRecords;
+  private boolean isClosed;
+
+  public AvroJsonDocBatchReader(String location, InputStream in, int batchSize)
+      throws IOException {
+    this.location = location;
+    this.records = new DataFileStream<>(in, new GenericDatumReader<>());
+    this.jsonDocGenerator = jsonFactory.createGenerator(jsonDocWriter).setRootValueSeparator(null);
+    this.batchSize = batchSize;
+    logger.info("Reading avro file " + location + " with schema " + records.getSchema());
+  }
+
+  @Override
+  protected List<String> readNextBatch() throws IOException {
+    List<String> jsonRecords = new ArrayList<>();
+    while (jsonRecords.size() < batchSize && records.hasNext()) {
+      reusedRecord = records.next(reusedRecord);
+      writeValue(reusedRecord, reusedRecord.getSchema());
+      jsonDocGenerator.flush();
+      jsonRecords.add(jsonDocWriter.toString());
+      jsonDocWriter.getBuffer().setLength(0);
+    }
+    totalRecords += jsonRecords.size();
+    return jsonRecords;
+  }
+
+  private void writeValue(Object value, Schema schema) throws IOException {
+    if (value == null) {
+      jsonDocGenerator.writeNull();
+      return;
+    }
+    LogicalType logicalType = schema.getLogicalType();
+    switch (schema.getType()) {
+      case RECORD:
+        GenericRecord record = (GenericRecord) value;
+        jsonDocGenerator.writeStartObject();
+        for (Schema.Field field : schema.getFields()) {
+          jsonDocGenerator.writeFieldName(field.name());
+          writeValue(record.get(field.pos()), field.schema());
+        }
+        jsonDocGenerator.writeEndObject();
+        break;
+      case ARRAY:
+        jsonDocGenerator.writeStartArray();
+        for (Object element : (Collection<?>) value) {
+          writeValue(element, schema.getElementType());
+        }
+        jsonDocGenerator.writeEndArray();
+        break;
+      case MAP:
+        jsonDocGenerator.writeStartObject();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+          jsonDocGenerator.writeFieldName(entry.getKey().toString());
+          writeValue(entry.getValue(), schema.getValueType());
+        }
+        jsonDocGenerator.writeEndObject();
+        break;
+      case UNION:
+        writeValue(value, schema.getTypes().get(GenericData.get().resolveUnion(schema, value)));
+        break;
+      case FIXED:
+        writeBytes(((GenericFixed) value).bytes(), logicalType);
+        break;
+      case BYTES:
+        ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        writeBytes(bytes, logicalType);
+        break;
+      case INT:
+        writeInt((Integer) value, logicalType);
+        break;
+      case LONG:
+        writeLong((Long) value, logicalType);
+        break;
+      case FLOAT:
+        jsonDocGenerator.writeNumber((Float) value);
+        break;
+      case DOUBLE:
+        jsonDocGenerator.writeNumber((Double) value);
+        break;
+      case BOOLEAN:
+        jsonDocGenerator.writeBoolean((Boolean) value);
+        break;
+      case NULL:
+        jsonDocGenerator.writeNull();
+        break;
+      default:
+        // strings and enum symbols
+        jsonDocGenerator.writeString(value.toString());
+    }
+  }
+
+  private void writeBytes(byte[] bytes, LogicalType logicalType) throws IOException {
+    if (logicalType instanceof LogicalTypes.Decimal) {
+      int scale = ((LogicalTypes.Decimal) logicalType).getScale();
+      jsonDocGenerator.writeNumber(new BigDecimal(new BigInteger(bytes), scale));
+    } else {
+      jsonDocGenerator.writeBinary(bytes);
+    }
+  }
+
+  private void writeInt(int value, LogicalType logicalType) throws IOException {
+    String logicalTypeName = logicalType == null ? "" : logicalType.getName();
+    switch (logicalTypeName) {
+      case "date":
+        jsonDocGenerator.writeString(LocalDate.ofEpochDay(value).toString());
+        break;
+      case "time-millis":
+        jsonDocGenerator.writeString(LocalTime.ofNanoOfDay(value * 1_000_000L).toString());
+        break;
+      default:
+        jsonDocGenerator.writeNumber(value);
+    }
+  }
+
+  private void writeLong(long value, LogicalType logicalType) throws IOException {
+    String logicalTypeName = logicalType == null ? "" : logicalType.getName();
+    switch (logicalTypeName) {
+      case "timestamp-millis":
+        jsonDocGenerator.writeString(Instant.ofEpochMilli(value).toString());
+        break;
+      case "timestamp-micros":
+        jsonDocGenerator.writeString(
+            Instant.ofEpochSecond(
+                    Math.floorDiv(value, 1_000_000L), Math.floorMod(value, 1_000_000L) * 1000)
+                .toString());
+        break;
+      case "time-micros":
+        jsonDocGenerator.writeString(LocalTime.ofNanoOfDay(value * 1000).toString());
+        break;
+      default:
+        jsonDocGenerator.writeNumber(value);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    jsonDocGenerator.close();
+    records.close();
+    logger.info("Total loaded records from " + location + " : " + totalRecords);
+  }
+}
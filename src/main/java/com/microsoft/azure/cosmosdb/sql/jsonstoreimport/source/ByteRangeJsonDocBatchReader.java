@@ -0,0 +1,129 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/**
+ * Reads the json lines owned by one byte range of a line delimited file. A range owns every line
+ * that starts within it, so ranges that cover a file back to back read each line exactly once.
+ *
+ * <p>The stream has to start one byte before the range, or at the start of the file for the first
+ * range. Everything up to and including the first newline is skipped, since that is the end of a
+ * line owned by the previous range. The last line is read to completion even when it crosses the
+ * end of the range.
+ */
+public class ByteRangeJsonDocBatchReader extends JsonDocBatchReader {
+
+  private static final Logger logger = Logger.getLogger(ByteRangeJsonDocBatchReader.class);
+  private final String location;
+  private final InputStream in;
+  private final long end;
+  private final int batchSize;
+  private final byte[] buffer = new byte[1024 * 1024];
+  private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+  private int bufferPosition;
+  private int bufferLimit;
+  private long position;
+  private long totalRecords;
+  private boolean isClosed;
+
+  public ByteRangeJsonDocBatchReader(
+      String location, InputStream in, long offset, long length, int batchSize)
+      throws IOException {
+    this.location = location;
+    this.in = in;
+    this.end = offset + length;
+    this.batchSize = batchSize;
+    this.position = offset == 0 ? 0 : offset - 1;
+    if (offset > 0) {
+      readLine();
+    }
+    logger.info(
+        String.format(
+            "Reading %s from byte %d to %d, first line starts at %d",
+            location, offset, end, position));
+  }
+
+  @Override
+  protected List<String> readNextBatch() throws IOException {
+    List<String> jsonRecords = new ArrayList<>();
+    while (jsonRecords.size() < batchSize && position < end) {
+      String jsonLine = readLine();
+      if (jsonLine == null) {
+        break;
+      }
+      if (!jsonLine.isEmpty()) {
+        jsonRecords.add(jsonLine);
+      }
+    }
+    totalRecords += jsonRecords.size();
+    return jsonRecords;
+  }
+
+  /** Reads up to the next newline, returns null at the end of the stream. */
+  private String readLine() throws IOException {
+    line.reset();
+    while (true) {
+      if (bufferPosition == bufferLimit) {
+        bufferLimit = in.read(buffer);
+        bufferPosition = 0;
+        if (bufferLimit <= 0) {
+          bufferLimit = 0;
+          return line.size() == 0 ? null : decodeLine();
+        }
+      }
+      int lineEnd = bufferPosition;
+      while (lineEnd < bufferLimit && buffer[lineEnd] != '\n') {
+        lineEnd++;
+      }
+      line.write(buffer, bufferPosition, lineEnd - bufferPosition);
+      position += lineEnd - bufferPosition;
+      bufferPosition = lineEnd;
+      if (lineEnd < bufferLimit) {
+        // Consume the newline, position is now the start of the next line
+        bufferPosition++;
+        position++;
+        return decodeLine();
+      }
+    }
+  }
+
+  private String decodeLine() {
+    String jsonLine = new String(line.toByteArray(), StandardCharsets.UTF_8);
+    return jsonLine.endsWith("\r") ? jsonLine.substring(0, jsonLine.length() - 1) : jsonLine;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    in.close();
+    logger.info("Total loaded records from " + location + " range : " + totalRecords);
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import org.apache.log4j.Logger;
+import org.xerial.snappy.SnappyFramedInputStream;
+import org.xerial.snappy.SnappyInputStream;
+
+/**
+ * Transparent decompression of source streams. The codec is taken from sourceCompression setting
+ * or, when set to auto, detected by file extension and magic bytes. Decompression runs on its own
+ * read ahead thread so it overlaps with network reads and json handling.
+ */
+public class CompressedInputStreams {
+
+  public enum Compression {
+    AUTO,
+    NONE,
+    GZIP,
+    ZSTD,
+    SNAPPY,
+    SNAPPY_FRAMED
+  }
+
+  private static final Logger logger = Logger.getLogger(CompressedInputStreams.class);
+  private static final int MAGIC_BYTES_LENGTH = 8;
+  private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+  private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd};
+  private static final byte[] SNAPPY_MAGIC = {(byte) 0x82, 'S', 'N', 'A', 'P', 'P', 'Y', 0};
+  private static final byte[] SNAPPY_FRAMED_MAGIC = {(byte) 0xff, 0x06, 0x00, 0x00, 's', 'N'};
+  private static final String[] PLAIN_TEXT_EXTENSIONS = {".json", ".jsonl", ".ndjson", ".txt"};
+
+  public static InputStream decompress(String name, InputStream in) throws IOException {
+    Compression compression = Settings.getSourceCompression();
+    if (compression == Compression.AUTO) {
+      compression = fromFileName(name);
+    }
+    if (compression == Compression.AUTO) {
+      BufferedInputStream bufferedIn = new BufferedInputStream(in);
+      compression = fromMagicBytes(peek(bufferedIn));
+      in = bufferedIn;
+    }
+    if (compression == Compression.NONE) {
+      return in;
+    }
+    logger.info("Decompressing " + name + " using " + compression);
+    return new ReadAheadInputStream(
+        openDecompressor(compression, in),
+        Settings.getReadAheadChunkSizeInKb() * 1024,
+        Settings.getReadAheadChunkCount(),
+        "decompress-" + name);
+  }
+
+  /**
+   * Tells from settings and file name alone, without reading it, that a file is not compressed.
+   * With auto only plain text extensions count, since snappy and misnamed files are only known by
+   * their magic bytes.
+   */
+  public static boolean isUncompressedByName(String name) {
+    Compression compression = Settings.getSourceCompression();
+    if (compression == Compression.AUTO) {
+      return hasPlainTextExtension(name);
+    }
+    return compression == Compression.NONE;
+  }
+
+  /** Returns true when the local file is compressed and cannot be memory mapped as text. */
+  public static boolean isCompressed(String name, InputStream in) throws IOException {
+    Compression compression = Settings.getSourceCompression();
+    if (compression == Compression.AUTO) {
+      compression = fromFileName(name);
+    }
+    if (compression == Compression.AUTO) {
+      compression = fromMagicBytes(readMagicBytes(in));
+    }
+    return compression != Compression.NONE;
+  }
+
+  private static InputStream openDecompressor(Compression compression, InputStream in)
+      throws IOException {
+    switch (compression) {
+      case GZIP:
+        return new GZIPInputStream(in, 64 * 1024);
+      case ZSTD:
+        return new ZstdInputStream(in);
+      case SNAPPY:
+        return new SnappyInputStream(in);
+      case SNAPPY_FRAMED:
+        return new SnappyFramedInputStream(in);
+      default:
+        throw new IOException("Unsupported compression " + compression);
+    }
+  }
+
+  private static Compression fromFileName(String name) {
+    String lowerCaseName = name.toLowerCase();
+    if (lowerCaseName.endsWith(".gz") || lowerCaseName.endsWith(".gzip")) {
+      return Compression.GZIP;
+    }
+    if (lowerCaseName.endsWith(".zst") || lowerCaseName.endsWith(".zstd")) {
+      return Compression.ZSTD;
+    }
+    // snappy has two stream formats, so it is always resolved by magic bytes
+    return Compression.AUTO;
+  }
+
+  private static boolean hasPlainTextExtension(String name) {
+    String lowerCaseName = name.toLowerCase();
+    for (String extension : PLAIN_TEXT_EXTENSIONS) {
+      if (lowerCaseName.endsWith(extension)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Compression fromMagicBytes(byte[] header) {
+    if (startsWith(header, GZIP_MAGIC)) {
+      return Compression.GZIP;
+    }
+    if (startsWith(header, ZSTD_MAGIC)) {
+      return Compression.ZSTD;
+    }
+    if (startsWith(header, SNAPPY_MAGIC)) {
+      return Compression.SNAPPY;
+    }
+    if (startsWith(header, SNAPPY_FRAMED_MAGIC)) {
+      return Compression.SNAPPY_FRAMED;
+    }
+    return Compression.NONE;
+  }
+
+  private static byte[] peek(BufferedInputStream in) throws IOException {
+    in.mark(MAGIC_BYTES_LENGTH);
+    byte[] header = readMagicBytes(in);
+    in.reset();
+    return header;
+  }
+
+  private static byte[] readMagicBytes(InputStream in) throws IOException {
+    byte[] header = new byte[MAGIC_BYTES_LENGTH];
+    int length = 0;
+    while (length < MAGIC_BYTES_LENGTH) {
+      int read = in.read(header, length, MAGIC_BYTES_LENGTH - length);
+      if (read < 0) {
+        break;
+      }
+      length += read;
+    }
+    return header;
+  }
+
+  private static boolean startsWith(byte[] header, byte[] magic) {
+    for (int i = 0; i < magic.length; i++) {
+      if (header[i] != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,140 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Single pass extractor for the CSV files emitted by the USql sort phase. Only the json document
+ * column and optionally the hash key column are copied, all other fields are skipped without
+ * building per row objects. Quoted fields, escaped quotes and embedded new lines are supported.
+ */
+public class CsvColumnReader implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private final Reader reader;
+  private final int columnIndex;
+  private final int hashKeyColumnIndex;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private final StringBuilder columnValue = new StringBuilder();
+  private final StringBuilder hashKeyValue = new StringBuilder();
+  private int bufferPosition;
+  private int bufferLength;
+
+  public CsvColumnReader(Reader reader, int columnIndex) {
+    this(reader, columnIndex, -1);
+  }
+
+  /**
+   * @param columnIndex zero based index of the column to extract.
+   * @param hashKeyColumnIndex zero based index of the hash key column, -1 to skip it.
+   */
+  public CsvColumnReader(Reader reader, int columnIndex, int hashKeyColumnIndex) {
+    this.reader = reader;
+    this.columnIndex = columnIndex;
+    this.hashKeyColumnIndex = hashKeyColumnIndex;
+  }
+
+  /**
+   * Advances to the next record.
+   *
+   * @return false when the end of the stream is reached.
+   */
+  public boolean nextRecord() throws IOException {
+    columnValue.setLength(0);
+    hashKeyValue.setLength(0);
+    int c = nextChar();
+    if (c < 0) {
+      return false;
+    }
+    int fieldIndex = 0;
+    boolean isQuoted = false;
+    boolean isFieldStart = true;
+    while (c >= 0) {
+      StringBuilder target =
+          fieldIndex == columnIndex
+              ? columnValue
+              : fieldIndex == hashKeyColumnIndex ? hashKeyValue : null;
+      if (isQuoted) {
+        if (c == '"') {
+          int next = nextChar();
+          if (next != '"') {
+            isQuoted = false;
+            c = next;
+            continue;
+          }
+        }
+        if (target != null) {
+          target.append((char) c);
+        }
+      } else if (c == '"' && isFieldStart) {
+        isQuoted = true;
+        isFieldStart = false;
+      } else if (c == ',') {
+        fieldIndex++;
+        isFieldStart = true;
+      } else if (c == '\n') {
+        break;
+      } else if (c == '\r') {
+        int next = nextChar();
+        if (next != '\n' && next >= 0) {
+          bufferPosition--;
+        }
+        break;
+      } else {
+        isFieldStart = false;
+        if (target != null) {
+          target.append((char) c);
+        }
+      }
+      c = nextChar();
+    }
+    return true;
+  }
+
+  /** Value of the extracted column for the current record. */
+  public String getColumnValue() {
+    return columnValue.toString();
+  }
+
+  /** Value of the hash key column for the current record. */
+  public String getHashKeyValue() {
+    return hashKeyValue.toString();
+  }
+
+  private int nextChar() throws IOException {
+    if (bufferPosition == bufferLength) {
+      bufferLength = reader.read(buffer, 0, BUFFER_SIZE);
+      bufferPosition = 0;
+      if (bufferLength <= 0) {
+        bufferLength = 0;
+        return -1;
+      }
+    }
+    return buffer[bufferPosition++];
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
@@ -19,49 +19,132 @@
 
 package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
 
-import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.log4j.Logger;
 
 public class FileReader {
   private static final Logger logger = Logger.getLogger(FileReader.class);
 
-  public static List<String> getJsonDocs(String filePath, Boolean isDelete) throws IOException {
-    List<String> jsonRecords = getJsonDocs(filePath);
-    if (isDelete) {
-      File downloadedFile = new File(filePath);
-      logger.info("Deleting downloaded file: " + downloadedFile.getAbsolutePath());
-      boolean isDeleted = downloadedFile.delete();
-      if (!isDeleted) {
-        logger.info("Deletion failed, looks like you don't have permission");
+  public static JsonDocBatchReader getJsonDocBatches(String filePath, int batchSize)
+      throws IOException {
+    switch (SourceFormat.of(filePath)) {
+      case PARQUET:
+        long fileSize = new File(filePath).length();
+        return new ParquetJsonDocBatchReader(
+            filePath,
+            new RangeReadInputFile(
+                fileSize, (offset, length) -> readRange(filePath, offset, length)),
+            batchSize);
+      case AVRO:
+        return new AvroJsonDocBatchReader(filePath, new FileInputStream(filePath), batchSize);
+      case JSON:
+        InputStream in = CompressedInputStreams.decompress(filePath, new FileInputStream(filePath));
+        return new JsonStreamDocBatchReader(filePath, in, batchSize);
+      default:
+        return getJsonLinesDocBatches(filePath, batchSize);
+    }
+  }
+
+  /** Reads the json lines owned by a byte range of a line delimited file. */
+  public static JsonDocBatchReader getJsonDocBatches(
+      String filePath, long offset, long length, int batchSize) throws IOException {
+    FileChannel fileChannel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+    fileChannel.position(offset == 0 ? 0 : offset - 1);
+    return new ByteRangeJsonDocBatchReader(
+        filePath, Channels.newInputStream(fileChannel), offset, length, batchSize);
+  }
+
+  private static JsonDocBatchReader getJsonLinesDocBatches(String filePath, int batchSize)
+      throws IOException {
+    boolean isCompressed;
+    try (InputStream in = new FileInputStream(filePath)) {
+      isCompressed = CompressedInputStreams.isCompressed(filePath, in);
+    }
+    if (!isCompressed) {
+      return new MappedFileJsonDocBatchReader(filePath, batchSize);
+    }
+    logger.info("Streaming compressed local file " + filePath + " ...");
+    InputStream in = CompressedInputStreams.decompress(filePath, new FileInputStream(filePath));
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    return new LineDelimitedJsonDocBatchReader(filePath, reader, batchSize);
+  }
+
+  /**
+   * Expands a local location into the files to ingest. Location can be a single file, a directory
+   * whose files are ingested recursively, or a glob such as /data/export/part-*.json or
+   * /data/export/**.json.
+   */
+  public static List<String> getLocalFileNames(String location) throws IOException {
+    int globStart = indexOfGlobCharacter(location);
+    if (globStart < 0) {
+      Path path = Paths.get(location);
+      if (!Files.isDirectory(path)) {
+        return Collections.singletonList(location);
       }
+      return listFiles(path, file -> true);
     }
-    return jsonRecords;
+    int baseEnd =
+        Math.max(location.lastIndexOf('/', globStart), location.lastIndexOf('\\', globStart));
+    Path baseDirectory =
+        baseEnd < 0 ? Paths.get(".") : Paths.get(location.substring(0, baseEnd + 1));
+    String pattern = location.substring(baseEnd + 1).replace('\\', '/');
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+    return listFiles(baseDirectory, file -> matcher.matches(baseDirectory.relativize(file)));
   }
 
-  public static List<String> getJsonDocs(String filePath) throws IOException {
-    logger.info("Loading local file " + filePath + " ...");
-    final long startTime = System.currentTimeMillis();
-    java.io.FileReader fr = new java.io.FileReader(filePath);
-    BufferedReader br = new BufferedReader(fr, 8192);
-    String line;
-    List<String> jsonRecords = new ArrayList<String>();
-    while ((line = br.readLine()) != null) {
-      jsonRecords.add(Settings.applyIdAndPartitionKeySettings(line).toString());
+  private static int indexOfGlobCharacter(String location) {
+    for (int i = 0; i < location.length(); i++) {
+      if ("*?[{".indexOf(location.charAt(i)) >= 0) {
+        return i;
+      }
     }
-    br.close();
-    if (fr != null) {
-      fr.close();
+    return -1;
+  }
+
+  private static List<String> listFiles(Path directory, Predicate<Path> filter) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      List<String> fileNames =
+          files
+              .filter(Files::isRegularFile)
+              .filter(filter)
+              .map(Path::toString)
+              .sorted()
+              .collect(Collectors.toList());
+      logger.info(String.format("Found %d local files under %s", fileNames.size(), directory));
+      return fileNames;
     }
-    logger.info("Total loaded records : " + jsonRecords.size());
-    long endTime = System.currentTimeMillis();
-    long totalTime = endTime - startTime;
-    logger.info("File loading execution time in seconds: " + totalTime / 1000);
-    return jsonRecords;
   }
 
+  private static byte[] readRange(String filePath, long offset, int length) throws IOException {
+    ByteBuffer range = ByteBuffer.allocate(length);
+    try (FileChannel fileChannel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+      while (range.hasRemaining()) {
+        if (fileChannel.read(range, offset + range.position()) < 0) {
+          throw new EOFException("Unexpected end of " + filePath);
+        }
+      }
+    }
+    return range.array();
+  }
 }
@@ -0,0 +1,207 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Applies the id and partition key settings to a json document without parsing it into a tree.
+ * The top level fields are located with a Jackson token stream, only the id and partition key
+ * fields are rewritten or added, and every other field is copied through as it appears in the
+ * source text. Documents are returned untouched when no mapping is configured.
+ */
+public class IdAndPartitionKeyPatcher {
+
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
+  public static String apply(String jsonDoc) throws IOException {
+    String idField = Settings.getIdField();
+    boolean isIdMapped = idField != null && !idField.isEmpty() && !idField.equals("id");
+    boolean isIdGenerated = Settings.getUseGuidForId();
+    String pkField = Settings.getCosmosDbDataCollectionPkValue();
+    boolean isPkGenerated = Settings.getUseGuidForPk() && pkField != null && !pkField.isEmpty();
+    if (!isIdMapped && !isIdGenerated && !isPkGenerated) {
+      return jsonDoc;
+    }
+
+    boolean isIdRewritten = isIdMapped || isIdGenerated;
+    IdGenerator idGenerator = Settings.getIdGenerator();
+    List<String> nameFields = Settings.getIdNameFields();
+    // Values named by fields are generated once the fields are read, anything else up front
+    boolean isGeneratedLater =
+        idGenerator.isNameBased() && !nameFields.isEmpty() && (isIdGenerated || isPkGenerated);
+    String[] nameValues = isGeneratedLater ? new String[nameFields.size()] : null;
+    String newId = null;
+    String newPk = null;
+    if (!isGeneratedLater) {
+      newId = isIdGenerated ? quote(idGenerator.generate(jsonDoc).toString()) : null;
+      newPk = isPkGenerated ? quote(idGenerator.generate(pkField + jsonDoc).toString()) : null;
+    }
+    StringBuilder patchedDoc = new StringBuilder(jsonDoc.length() + 96).append('{');
+    boolean isPkWritten = false;
+    try (JsonParser parser = jsonFactory.createParser(jsonDoc)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected a json object but found " + parser.getCurrentToken());
+      }
+      int fieldStart = -1;
+      String fieldName = null;
+      int valueStart = -1;
+      int nameIndex = -1;
+      JsonToken token;
+      while ((token = parser.nextToken()) != JsonToken.END_OBJECT) {
+        if (token == null) {
+          throw new IOException("Unterminated json object");
+        }
+        int tokenStart = (int) parser.getTokenLocation().getCharOffset();
+        if (token != JsonToken.FIELD_NAME) {
+          // A top level value, nested values are skipped without being materialized
+          valueStart = tokenStart;
+          if (nameIndex >= 0 && token == JsonToken.VALUE_STRING) {
+            nameValues[nameIndex] = parser.getText();
+          }
+          parser.skipChildren();
+          continue;
+        }
+        if (fieldName != null) {
+          String value = trimValue(jsonDoc, valueStart, tokenStart);
+          newId = isIdMapped && !isIdGenerated && fieldName.equals(idField) ? value : newId;
+          setNameValue(nameValues, nameIndex, value);
+          isPkWritten |=
+              appendField(
+                  patchedDoc,
+                  jsonDoc,
+                  fieldStart,
+                  tokenStart,
+                  fieldName,
+                  isIdRewritten,
+                  isPkGenerated,
+                  newPk);
+        }
+        fieldStart = tokenStart;
+        fieldName = parser.getCurrentName();
+        nameIndex = isGeneratedLater ? nameFields.indexOf(fieldName) : -1;
+      }
+      int objectEnd = (int) parser.getTokenLocation().getCharOffset();
+      if (fieldName != null) {
+        String value = trimValue(jsonDoc, valueStart, objectEnd);
+        newId = isIdMapped && !isIdGenerated && fieldName.equals(idField) ? value : newId;
+        setNameValue(nameValues, nameIndex, value);
+        isPkWritten |=
+            appendField(
+                patchedDoc,
+                jsonDoc,
+                fieldStart,
+                objectEnd,
+                fieldName,
+                isIdRewritten,
+                isPkGenerated,
+                newPk);
+      }
+    }
+    if (isGeneratedLater) {
+      StringBuilder nameBuilder = new StringBuilder();
+      for (String nameValue : nameValues) {
+        nameBuilder.append(nameValue).append('\u0000');
+      }
+      String name = nameBuilder.toString();
+      newId = isIdGenerated ? quote(idGenerator.generate(name).toString()) : newId;
+      newPk = isPkGenerated ? quote(idGenerator.generate(pkField + name).toString()) : null;
+    }
+    if (isIdMapped && !isIdGenerated && newId == null) {
+      throw new IOException("Document has no " + idField + " field to use as id");
+    }
+    if (newId != null) {
+      appendSeparator(patchedDoc).append("\"id\":").append(newId);
+    }
+    if (newPk != null && !isPkWritten) {
+      appendSeparator(patchedDoc).append(quote(pkField)).append(':').append(newPk);
+    }
+    return patchedDoc.append('}').toString();
+  }
+
+  /**
+   * Copies a field unless it is rewritten, the id is always written at the end since its value
+   * may come from a later field. A generated partition key replaces the field in place when its
+   * value is already known, otherwise it is dropped and written at the end. Returns whether the
+   * partition key was written.
+   */
+  private static boolean appendField(
+      StringBuilder patchedDoc,
+      String jsonDoc,
+      int fieldStart,
+      int fieldEnd,
+      String fieldName,
+      boolean isIdRewritten,
+      boolean isPkRewritten,
+      String newPk) {
+    if (isIdRewritten && fieldName.equals("id")) {
+      return false;
+    }
+    if (isPkRewritten && fieldName.equals(Settings.getCosmosDbDataCollectionPkValue())) {
+      if (newPk == null) {
+        return false;
+      }
+      appendSeparator(patchedDoc).append(quote(fieldName)).append(':').append(newPk);
+      return true;
+    }
+    appendSeparator(patchedDoc);
+    patchedDoc.append(jsonDoc, fieldStart, trimEnd(jsonDoc, fieldStart, fieldEnd));
+    return false;
+  }
+
+  /** Keeps a non string value of a name field as its json text, string values are unescaped. */
+  private static void setNameValue(String[] nameValues, int nameIndex, String value) {
+    if (nameIndex >= 0 && nameValues[nameIndex] == null) {
+      nameValues[nameIndex] = value;
+    }
+  }
+
+  private static String trimValue(String jsonDoc, int valueStart, int valueEnd) {
+    return jsonDoc.substring(valueStart, trimEnd(jsonDoc, valueStart, valueEnd));
+  }
+
+  /** Drops the whitespace and the comma that separate a field from the next one. */
+  private static int trimEnd(String jsonDoc, int start, int end) {
+    while (end > start) {
+      char c = jsonDoc.charAt(end - 1);
+      if (c != ',' && c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+        break;
+      }
+      end--;
+    }
+    return end;
+  }
+
+  private static StringBuilder appendSeparator(StringBuilder patchedDoc) {
+    return patchedDoc.length() > 1 ? patchedDoc.append(',') : patchedDoc;
+  }
+
+  private static String quote(String value) {
+    StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+    JsonStringEncoder.getInstance().quoteAsString(value, quoted);
+    return quoted.append('"').toString();
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import com.fasterxml.uuid.EthernetAddress;
+import com.fasterxml.uuid.Generators;
+import com.fasterxml.uuid.Logger;
+import com.fasterxml.uuid.impl.NameBasedGenerator;
+import com.fasterxml.uuid.impl.RandomBasedGenerator;
+import com.fasterxml.uuid.impl.TimeBasedGenerator;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Strategies for the generated id and partition key values. RANDOM is the java UUID generator
+ * backed by the shared SecureRandom, FAST_RANDOM uses a random generator per thread, TIME and
+ * ORDERED are time based UUIDs where ORDERED puts the timestamp first so ids sort by creation
+ * time, and NAME derives the UUID from the idNameFields of the document so a rerun of the same
+ * import produces the same ids.
+ */
+public enum IdGenerator {
+  RANDOM {
+    @Override
+    public UUID generate(String name) {
+      return UUID.randomUUID();
+    }
+  },
+  FAST_RANDOM {
+    @Override
+    public UUID generate(String name) {
+      return fastRandomGenerator.get().generate();
+    }
+  },
+  TIME {
+    @Override
+    public UUID generate(String name) {
+      return TimeBased.generator.generate();
+    }
+  },
+  ORDERED {
+    @Override
+    public UUID generate(String name) {
+      UUID uuid = TimeBased.generator.generate();
+      long timestamp = uuid.timestamp();
+      long mostSigBits = ((timestamp >>> 12) << 16) | 0x6000L | (timestamp & 0x0FFFL);
+      return new UUID(mostSigBits, uuid.getLeastSignificantBits());
+    }
+  },
+  NAME {
+    @Override
+    public UUID generate(String name) {
+      return nameBasedGenerator.get().generate(name);
+    }
+  };
+
+  private static final ThreadLocal<RandomBasedGenerator> fastRandomGenerator =
+      ThreadLocal.withInitial(() -> Generators.randomBasedGenerator(ThreadLocalRandom.current()));
+
+  // Name based generators synchronize on their digest, so every thread gets its own
+  private static final ThreadLocal<NameBasedGenerator> nameBasedGenerator =
+      ThreadLocal.withInitial(() -> Generators.nameBasedGenerator(Settings.getIdNamespace()));
+
+  /** Returns a new UUID, name is only used by the NAME strategy. */
+  public abstract UUID generate(String name);
+
+  public boolean isNameBased() {
+    return this == NAME;
+  }
+
+  /** Holds the time based generator so the network interface lookup only happens when used. */
+  private static class TimeBased {
+    private static final TimeBasedGenerator generator;
+
+    static {
+      // Bulk imports run into the timer resolution all the time, which is logged as a warning
+      Logger.setLogLevel(Logger.LOG_ERROR_AND_ABOVE);
+      generator = Generators.timeBasedGenerator(EthernetAddress.fromInterface());
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Pull based reader which hands out json documents of a store entity in batches, so only the
+ * current batch has to be kept in memory instead of the whole file.
+ */
+public abstract class JsonDocBatchReader implements Iterator<List<String>>, Closeable {
+
+  private List<String> nextBatch;
+  private boolean isExhausted;
+
+  /**
+   * Reads the next batch of documents from the underlying source.
+   *
+   * @return next batch or null/empty list when the source is drained.
+   */
+  protected abstract List<String> readNextBatch() throws IOException;
+
+  @Override
+  public boolean hasNext() {
+    if (nextBatch != null) {
+      return true;
+    }
+    if (isExhausted) {
+      return false;
+    }
+    try {
+      nextBatch = readNextBatch();
+      if (nextBatch == null || nextBatch.isEmpty()) {
+        nextBatch = null;
+        isExhausted = true;
+        close();
+      }
+    } catch (IOException e) {
+      isExhausted = true;
+      throw new UncheckedIOException(e);
+    }
+    return nextBatch != null;
+  }
+
+  @Override
+  public List<String> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    List<String> batch = nextBatch;
+    nextBatch = null;
+    return batch;
+  }
+
+  @Override
+  public void close() throws IOException {}
+}
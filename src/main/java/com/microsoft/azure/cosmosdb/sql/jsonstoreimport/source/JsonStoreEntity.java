@@ -34,6 +34,14 @@ public class JsonStoreEntity {
   public String location;
   public String operation;
   public String partitionId;
+  // Byte range of the file to import, a length of 0 means the whole file
+  public long offset;
+  public long length;
   public JsonStoreEntityImportResponse jsonStoreEntityImportResponse;
+
+  /** Name the rejects of the entity go by, byte ranges of a file are imported independently. */
+  public String getSourceName() {
+    return length > 0 ? location + "#" + offset + "-" + length : location;
+  }
 }
 
@@ -31,10 +31,12 @@ public class JsonStoreEntityImportResponse {
   private transient BulkImportResponse bulkImportResponse;
   private int numberOfDocumentsReceived;
   private int numberOfDocumentsImported;
+  private int numberOfDocumentsRejected;
   private List<String> errorInfo;
   private boolean isError;
   private long totalTimeTakenInSeconds;
   private double totalRequestUnitsConsumed;
+  private transient long totalTimeTakenInNanos;
 
   public JsonStoreEntityImportResponse() {}
 
@@ -50,12 +52,33 @@ public class JsonStoreEntityImportResponse {
     this.numberOfDocumentsImported = bulkImportResponse.getNumberOfDocumentsImported();
     this.totalTimeTakenInSeconds = bulkImportResponse.getTotalTimeTaken().getSeconds();
     this.totalRequestUnitsConsumed = bulkImportResponse.getTotalRequestUnitsConsumed();
+    this.totalTimeTakenInNanos = bulkImportResponse.getTotalTimeTaken().toNanos();
+  }
+
+  /**
+   * Adds the import of the documents retried after a partition split, reimportedDocuments were
+   * already counted as imported before the retry.
+   */
+  public void addRetryResponse(BulkImportResponse retryResponse, int reimportedDocuments) {
+    this.bulkImportResponse = retryResponse;
+    this.numberOfDocumentsImported +=
+        retryResponse.getNumberOfDocumentsImported() - reimportedDocuments;
+    this.totalTimeTakenInSeconds += retryResponse.getTotalTimeTaken().getSeconds();
+    this.totalRequestUnitsConsumed += retryResponse.getTotalRequestUnitsConsumed();
+    this.totalTimeTakenInNanos += retryResponse.getTotalTimeTaken().toNanos();
+  }
+
+  /** Adds documents that were read but rejected before the import, such as by the screen. */
+  public void addScreenedOutDocuments(int screenedOutDocuments) {
+    this.numberOfDocumentsReceived += screenedOutDocuments;
+    this.numberOfDocumentsRejected += screenedOutDocuments;
   }
 
   public static JsonStoreEntityImportResponse aggregate(
       List<JsonStoreEntityImportResponse> jsonStoreEntityImportResponses) {
     int numberOfDocumentsReceived = 0;
     int numberOfDocumentsImported = 0;
+    int numberOfDocumentsRejected = 0;
     long totalTimeTakenInSeconds = 0;
     double totalRequestUnitsConsumed = 0;
     List<String> errorInfo = new ArrayList<>();
@@ -64,6 +87,8 @@ public class JsonStoreEntityImportResponse {
           numberOfDocumentsReceived + response.getNumberOfDocumentsReceived();
       numberOfDocumentsImported =
           numberOfDocumentsImported + response.getNumberOfDocumentsImported();
+      numberOfDocumentsRejected =
+          numberOfDocumentsRejected + response.getNumberOfDocumentsRejected();
       totalTimeTakenInSeconds = totalTimeTakenInSeconds + response.getTotalTimeTakenInSeconds();
       totalRequestUnitsConsumed =
           totalRequestUnitsConsumed + response.getTotalRequestUnitsConsumed();
@@ -75,6 +100,7 @@ public class JsonStoreEntityImportResponse {
     JsonStoreEntityImportResponse aggregatedResponse = new JsonStoreEntityImportResponse();
     aggregatedResponse.setNumberOfDocumentsReceived(numberOfDocumentsReceived);
     aggregatedResponse.setNumberOfDocumentsImported(numberOfDocumentsImported);
+    aggregatedResponse.setNumberOfDocumentsRejected(numberOfDocumentsRejected);
     aggregatedResponse.setTotalTimeTakenInSeconds(totalTimeTakenInSeconds);
     aggregatedResponse.setTotalRequestUnitsConsumed(totalRequestUnitsConsumed);
     aggregatedResponse.setErrorInfo(errorInfo);
@@ -89,6 +115,11 @@ public class JsonStoreEntityImportResponse {
     return numberOfDocumentsImported;
   }
 
+  /** Documents sent to the rejects by the screen or the bulk importer, these do not fail it. */
+  public int getNumberOfDocumentsRejected() {
+    return numberOfDocumentsRejected;
+  }
+
   public long getTotalTimeTakenInSeconds() {
     return totalTimeTakenInSeconds;
   }
@@ -97,6 +128,11 @@ public class JsonStoreEntityImportResponse {
     return totalRequestUnitsConsumed;
   }
 
+  /** Time the bulk importer took, not kept with the import tracking. */
+  public long getTotalTimeTakenInNanos() {
+    return totalTimeTakenInNanos;
+  }
+
   public List<String> getErrorInfo() {
     return errorInfo;
   }
@@ -113,16 +149,24 @@ public class JsonStoreEntityImportResponse {
     this.totalTimeTakenInSeconds = totalTimeTakenInSeconds;
   }
 
+  public void setTotalTimeTakenInNanos(long totalTimeTakenInNanos) {
+    this.totalTimeTakenInNanos = totalTimeTakenInNanos;
+  }
+
   public void setNumberOfDocumentsImported(int numberOfDocumentsImported) {
     this.numberOfDocumentsImported = numberOfDocumentsImported;
   }
 
+  public void setNumberOfDocumentsRejected(int numberOfDocumentsRejected) {
+    this.numberOfDocumentsRejected = numberOfDocumentsRejected;
+  }
+
   public void setNumberOfDocumentsReceived(int numberOfDocumentsReceived) {
     this.numberOfDocumentsReceived = numberOfDocumentsReceived;
   }
 
   public boolean isError() {
-    if (numberOfDocumentsReceived > numberOfDocumentsImported) {
+    if (numberOfDocumentsReceived > numberOfDocumentsImported + numberOfDocumentsRejected) {
       logErrors();
       return true;
     }
@@ -132,8 +176,7 @@ public class JsonStoreEntityImportResponse {
   public void logErrors() {
     logger.error("failed import all the documents");
     logger.error("number of documents received" + numberOfDocumentsReceived);
-    logger.error(
-        "number of documents imported" + bulkImportResponse.getNumberOfDocumentsImported());
+    logger.error("number of documents imported" + numberOfDocumentsImported);
     this.isError = true;
     errorInfo =
         bulkImportResponse
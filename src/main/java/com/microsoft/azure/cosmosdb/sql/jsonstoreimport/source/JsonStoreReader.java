@@ -21,7 +21,7 @@ package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
 
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.AdlStoreClientExtension;
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sdkextensions.AzureBlobClientExtension;
-import java.util.List;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.transform.TransformingJsonDocBatchReader;
 
 public class JsonStoreReader {
 
@@ -31,21 +31,63 @@ public class JsonStoreReader {
     this.jsonStoreEntity = jsonStoreEntity;
   }
 
-  public List<String> getJsonDocs() throws Exception {
+  public JsonDocBatchReader getJsonDocBatches(int batchSize) throws Exception {
+    if (jsonStoreEntity.length > 0) {
+      return new TransformingJsonDocBatchReader(
+          jsonStoreEntity.getSourceName(), getSourceJsonDocBatches(batchSize));
+    }
+    // Scale test documents are transformed when they are generated
     switch (this.jsonStoreEntity.storeType) {
       case AZURE_BLOB:
-        return AzureBlobClientExtension.getJsonDocs(jsonStoreEntity.location);
       case ADL:
-        return AdlStoreClientExtension.getJsonDocs(jsonStoreEntity.location);
       case WINDOWS_FILE_SYSTEM:
-        return FileReader.getJsonDocs(jsonStoreEntity.location);
+        return new TransformingJsonDocBatchReader(
+            jsonStoreEntity.location, getSourceJsonDocBatches(batchSize));
       case TEST:
-        return ScaleTestReader.getJsonTestData();
+        return new InMemoryJsonDocBatchReader(ScaleTestReader.getJsonTestData(), batchSize);
       case PARTITION_TEST:
-        return ScaleTestReader.getJsonPartitionTestData();
+        return new InMemoryJsonDocBatchReader(
+            ScaleTestReader.getJsonPartitionTestData(), batchSize);
       default:
         throw new Exception(
             "Missing store type, please try with Adl, WINDOWS_FILE_SYSTEM options.");
     }
   }
+
+  /** Reads the documents as they are stored, without screening or transforming them. */
+  public JsonDocBatchReader getSourceJsonDocBatches(int batchSize) throws Exception {
+    String location = jsonStoreEntity.location;
+    if (jsonStoreEntity.length > 0) {
+      return getJsonDocBatchesInRange(batchSize);
+    }
+    switch (this.jsonStoreEntity.storeType) {
+      case AZURE_BLOB:
+        return AzureBlobClientExtension.getJsonDocBatches(location, batchSize);
+      case ADL:
+        return AdlStoreClientExtension.getJsonDocBatches(location, batchSize);
+      case WINDOWS_FILE_SYSTEM:
+        return FileReader.getJsonDocBatches(location, batchSize);
+      default:
+        throw new Exception(
+            "Missing store type, please try with Adl, WINDOWS_FILE_SYSTEM options.");
+    }
+  }
+
+  private JsonDocBatchReader getJsonDocBatchesInRange(int batchSize) throws Exception {
+    long offset = jsonStoreEntity.offset;
+    long length = jsonStoreEntity.length;
+    switch (this.jsonStoreEntity.storeType) {
+      case AZURE_BLOB:
+        return AzureBlobClientExtension.getJsonDocBatches(
+            jsonStoreEntity.location, offset, length, batchSize);
+      case ADL:
+        return AdlStoreClientExtension.getJsonDocBatches(
+            jsonStoreEntity.location, offset, length, batchSize);
+      case WINDOWS_FILE_SYSTEM:
+        return FileReader.getJsonDocBatches(jsonStoreEntity.location, offset, length, batchSize);
+      default:
+        throw new Exception(
+            "Byte ranges are not supported for store type " + jsonStoreEntity.storeType);
+    }
+  }
 }
@@ -0,0 +1,109 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/**
+ * Streams json documents from a top level json array or from concatenated, possibly pretty
+ * printed, json objects. Documents are cut at object boundaries by the token stream and copied
+ * token by token, so only the document being copied is held in memory.
+ */
+public class JsonStreamDocBatchReader extends JsonDocBatchReader {
+
+  private static final Logger logger = Logger.getLogger(JsonStreamDocBatchReader.class);
+  private static final JsonFactory jsonFactory = new JsonFactory();
+  private final String location;
+  private final JsonParser parser;
+  private final StringWriter jsonDocWriter = new StringWriter();
+  private final JsonGenerator jsonDocGenerator;
+  private final int batchSize;
+  private int arrayDepth;
+  private long totalRecords;
+  private boolean isClosed;
+
+  public JsonStreamDocBatchReader(String location, InputStream in, int batchSize)
+      throws IOException {
+    this.location = location;
+    this.parser = jsonFactory.createParser(in);
+    this.jsonDocGenerator = jsonFactory.createGenerator(jsonDocWriter).setRootValueSeparator(null);
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  protected List<String> readNextBatch() throws IOException {
+    List<String> jsonRecords = new ArrayList<>();
+    String jsonDoc;
+    while (jsonRecords.size() < batchSize && (jsonDoc = nextJsonDoc()) != null) {
+      jsonRecords.add(jsonDoc);
+    }
+    totalRecords += jsonRecords.size();
+    return jsonRecords;
+  }
+
+  private String nextJsonDoc() throws IOException {
+    JsonToken token;
+    while ((token = parser.nextToken()) != null) {
+      switch (token) {
+        case START_ARRAY:
+          arrayDepth++;
+          break;
+        case END_ARRAY:
+          arrayDepth--;
+          break;
+        case START_OBJECT:
+          jsonDocGenerator.copyCurrentStructure(parser);
+          jsonDocGenerator.flush();
+          String jsonDoc = jsonDocWriter.toString();
+          jsonDocWriter.getBuffer().setLength(0);
+          return jsonDoc;
+        default:
+          throw new IOException(
+              String.format(
+                  "Expected a json object in %s but found %s at %s",
+                  location, token, parser.getCurrentLocation()));
+      }
+    }
+    if (arrayDepth != 0) {
+      throw new IOException("Unterminated json array in " + location);
+    }
+    return null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    jsonDocGenerator.close();
+    parser.close();
+    logger.info("Total loaded records from " + location + " : " + totalRecords);
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/** Streams new line delimited json documents in batches from a reader. */
+public class LineDelimitedJsonDocBatchReader extends JsonDocBatchReader {
+
+  private static final Logger logger = Logger.getLogger(LineDelimitedJsonDocBatchReader.class);
+  private final String location;
+  private final BufferedReader reader;
+  private final int batchSize;
+  private final long startTime;
+  private long totalRecords;
+  private boolean isClosed;
+
+  public LineDelimitedJsonDocBatchReader(String location, BufferedReader reader, int batchSize) {
+    this.location = location;
+    this.reader = reader;
+    this.batchSize = batchSize;
+    this.startTime = System.currentTimeMillis();
+  }
+
+  @Override
+  protected List<String> readNextBatch() throws IOException {
+    List<String> jsonRecords = new ArrayList<>();
+    String line;
+    while (jsonRecords.size() < batchSize && (line = reader.readLine()) != null) {
+      jsonRecords.add(line);
+    }
+    totalRecords += jsonRecords.size();
+    return jsonRecords;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    reader.close();
+    logger.info("Total loaded records from " + location + " : " + totalRecords);
+    long totalTime = System.currentTimeMillis() - startTime;
+    logger.info("File streaming execution time in seconds: " + totalTime / 1000);
+  }
+}
@@ -0,0 +1,237 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.log4j.Logger;
+
+/**
+ * Reads a local new line delimited json file by memory mapping it in segments. Segments are
+ * aligned to line boundaries and decoded by a pool of worker threads shared by all readers, the
+ * decoded documents are handed out in file order. Each reader keeps at most
+ * localFileMaxBytesInFlightInMb of segments mapped and decoded ahead of it. Blank lines are
+ * skipped.
+ */
+public class MappedFileJsonDocBatchReader extends JsonDocBatchReader {
+
+  private static final Logger logger = Logger.getLogger(MappedFileJsonDocBatchReader.class);
+  private static final int BOUNDARY_SCAN_BUFFER_SIZE = 64 * 1024;
+  private static final long MAX_SEGMENT_SIZE = 1024L * 1024L * 1024L;
+  private static volatile ExecutorService segmentDecoders;
+  private final String filePath;
+  private final FileChannel fileChannel;
+  private final long fileSize;
+  private final long segmentSize;
+  private final int batchSize;
+  private final int maxSegmentsInFlight;
+  private final long maxBytesInFlight;
+  private final Queue<Segment> segmentsInFlight = new ArrayDeque<>();
+  private final Queue<String> pendingDocs = new ArrayDeque<>();
+  private final long startTime;
+  private long bytesInFlight;
+  private long nextSegmentStart;
+  private long totalRecords;
+  private boolean isClosed;
+
+  public MappedFileJsonDocBatchReader(String filePath, int batchSize) throws IOException {
+    this.filePath = filePath;
+    this.batchSize = batchSize;
+    this.fileChannel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+    this.fileSize = fileChannel.size();
+    this.segmentSize =
+        Math.min(Settings.getLocalFileSegmentSizeInMb() * 1024L * 1024L, MAX_SEGMENT_SIZE);
+    this.maxSegmentsInFlight = Settings.getLocalFileReaderThreads() * 2;
+    this.maxBytesInFlight = Settings.getLocalFileMaxBytesInFlightInMb() * 1024L * 1024L;
+    this.startTime = System.currentTimeMillis();
+    logger.info(
+        String.format(
+            "Mapping local file %s of %d bytes using %d decoder threads",
+            filePath, fileSize, Settings.getLocalFileReaderThreads()));
+  }
+
+  @Override
+  protected List<String> readNextBatch() throws IOException {
+    while (pendingDocs.size() < batchSize) {
+      scheduleSegments();
+      Segment segment = segmentsInFlight.poll();
+      if (segment == null) {
+        break;
+      }
+      pendingDocs.addAll(awaitSegment(segment.jsonDocs));
+      bytesInFlight -= segment.length;
+    }
+    List<String> jsonRecords = new ArrayList<>(Math.min(batchSize, pendingDocs.size()));
+    while (jsonRecords.size() < batchSize && !pendingDocs.isEmpty()) {
+      jsonRecords.add(pendingDocs.poll());
+    }
+    totalRecords += jsonRecords.size();
+    return jsonRecords;
+  }
+
+  /** Schedules segments within the budget, one segment is always allowed so large lines pass. */
+  private void scheduleSegments() throws IOException {
+    while (segmentsInFlight.size() < maxSegmentsInFlight
+        && nextSegmentStart < fileSize
+        && (segmentsInFlight.isEmpty() || bytesInFlight + segmentSize <= maxBytesInFlight)) {
+      long start = nextSegmentStart;
+      long end = findNextLineStart(Math.min(start + segmentSize, fileSize));
+      if (end - start > Integer.MAX_VALUE) {
+        throw new IOException(
+            String.format("%s has a line longer than 2 GB after offset %d", filePath, start));
+      }
+      nextSegmentStart = end;
+      segmentsInFlight.add(
+          new Segment(end - start, getPool().submit(() -> decodeSegment(start, end))));
+      bytesInFlight += end - start;
+    }
+  }
+
+  private List<String> awaitSegment(Future<List<String>> segment) throws IOException {
+    try {
+      return segment.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while decoding " + filePath, e);
+    } catch (ExecutionException e) {
+      throw new IOException("Decoding " + filePath + " failed", e.getCause());
+    }
+  }
+
+  /** Returns the position right after the first new line at or after the given position. */
+  private long findNextLineStart(long position) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SCAN_BUFFER_SIZE);
+    while (position < fileSize) {
+      buffer.clear();
+      int read = fileChannel.read(buffer, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return fileSize;
+  }
+
+  private List<String> decodeSegment(long start, long end) throws IOException {
+    MappedByteBuffer segment = fileChannel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    List<String> jsonRecords = new ArrayList<>();
+    byte[] line = new byte[8192];
+    int limit = segment.limit();
+    int lineStart = 0;
+    for (int i = 0; i <= limit; i++) {
+      if (i < limit && segment.get(i) != '\n') {
+        continue;
+      }
+      int lineLength = i - lineStart;
+      if (lineLength > 0) {
+        if (line.length < lineLength) {
+          line = new byte[Math.max(lineLength, line.length * 2)];
+        }
+        segment.position(lineStart);
+        segment.get(line, 0, lineLength);
+        if (!isBlank(line, lineLength)) {
+          jsonRecords.add(toJsonDoc(line, lineLength));
+        }
+      }
+      lineStart = i + 1;
+    }
+    return jsonRecords;
+  }
+
+  private static boolean isBlank(byte[] line, int lineLength) {
+    for (int i = 0; i < lineLength; i++) {
+      if (line[i] != ' ' && line[i] != '\t' && line[i] != '\r') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String toJsonDoc(byte[] line, int lineLength) {
+    if (lineLength > 0 && line[lineLength - 1] == '\r') {
+      lineLength--;
+    }
+    return new String(line, 0, lineLength, StandardCharsets.UTF_8);
+  }
+
+  private static ExecutorService getPool() {
+    if (segmentDecoders == null) {
+      synchronized (MappedFileJsonDocBatchReader.class) {
+        if (segmentDecoders == null) {
+          segmentDecoders =
+              Executors.newFixedThreadPool(
+                  Settings.getLocalFileReaderThreads(),
+                  new ThreadFactoryBuilder()
+                      .setNameFormat("segment-decoder-%d")
+                      .setDaemon(true)
+                      .build());
+        }
+      }
+    }
+    return segmentDecoders;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    for (Segment segment : segmentsInFlight) {
+      segment.jsonDocs.cancel(true);
+    }
+    segmentsInFlight.clear();
+    pendingDocs.clear();
+    fileChannel.close();
+    logger.info("Total loaded records from " + filePath + " : " + totalRecords);
+    long totalTime = System.currentTimeMillis() - startTime;
+    logger.info("File loading execution time in seconds: " + totalTime / 1000);
+  }
+
+  private static class Segment {
+    private final long length;
+    private final Future<List<String>> jsonDocs;
+
+    Segment(long length, Future<List<String>> jsonDocs) {
+      this.length = length;
+      this.jsonDocs = jsonDocs;
+    }
+  }
+}
@@ -0,0 +1,386 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.log4j.Logger;
+import org.apache.parquet.ParquetReadOptions;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.MessageColumnIO;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.schema.GroupType;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.LogicalTypeAnnotation.DateLogicalTypeAnnotation;
+import org.apache.parquet.schema.LogicalTypeAnnotation.DecimalLogicalTypeAnnotation;
+import org.apache.parquet.schema.LogicalTypeAnnotation.EnumLogicalTypeAnnotation;
+import org.apache.parquet.schema.LogicalTypeAnnotation.IntLogicalTypeAnnotation;
+import org.apache.parquet.schema.LogicalTypeAnnotation.JsonLogicalTypeAnnotation;
+import org.apache.parquet.schema.LogicalTypeAnnotation.ListLogicalTypeAnnotation;
+import org.apache.parquet.schema.LogicalTypeAnnotation.MapKeyValueTypeAnnotation;
+import org.apache.parquet.schema.LogicalTypeAnnotation.MapLogicalTypeAnnotation;
+import org.apache.parquet.schema.LogicalTypeAnnotation.StringLogicalTypeAnnotation;
+import org.apache.parquet.schema.LogicalTypeAnnotation.TimeLogicalTypeAnnotation;
+import org.apache.parquet.schema.LogicalTypeAnnotation.TimeUnit;
+import org.apache.parquet.schema.LogicalTypeAnnotation.TimestampLogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.Type;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Reads a parquet file row group by row group and converts the rows to json documents. Row groups
+ * are decoded in parallel, every worker opens its own reader restricted to the row group it owns,
+ * and documents are handed out in file order. At most columnarMaxBytesInFlightInMb of uncompressed
+ * row groups are decoded ahead of the reader.
+ *
+ * <p>LIST and MAP groups become json arrays and objects, decimals become json numbers, dates, times
+ * and timestamps, INT96 included, become ISO-8601 strings and missing optional fields become null.
+ */
+public class ParquetJsonDocBatchReader extends JsonDocBatchReader {
+
+  private static final Logger logger = Logger.getLogger(ParquetJsonDocBatchReader.class);
+  private static final long JULIAN_DAY_OF_EPOCH = 2440588;
+  private final String location;
+  private final InputFile inputFile;
+  private final int batchSize;
+  private final MessageType schema;
+  private final List<BlockMetaData> rowGroups;
+  private final int maxRowGroupsInFlight;
+  private final long maxBytesInFlight;
+  private final ExecutorService rowGroupDecoders;
+  private final Queue<RowGroup> rowGroupsInFlight = new ArrayDeque<>();
+  private final Queue<String> pendingDocs = new ArrayDeque<>();
+  private long bytesInFlight;
+  private int nextRowGroup;
+  private long totalRecords;
+  private boolean isClosed;
+
+  public ParquetJsonDocBatchReader(String location, InputFile inputFile, int batchSize)
+      throws IOException {
+    this.location = location;
+    this.inputFile = inputFile;
+    this.batchSize = batchSize;
+    try (ParquetFileReader footerReader =
+        ParquetFileReader.open(inputFile, ParquetReadOptions.builder().build())) {
+      this.schema = footerReader.getFooter().getFileMetaData().getSchema();
+      this.rowGroups = footerReader.getFooter().getBlocks();
+    } catch (IOException | RuntimeException e) {
+      if (inputFile instanceof RangeReadInputFile) {
+        ((RangeReadInputFile) inputFile).close(false);
+      }
+      throw e;
+    }
+    int decoderThreads = Settings.getColumnarReaderThreads();
+    this.maxRowGroupsInFlight = decoderThreads;
+    this.maxBytesInFlight = Settings.getColumnarMaxBytesInFlightInMb() * 1024L * 1024L;
+    this.rowGroupDecoders = Executors.newFixedThreadPool(decoderThreads);
+    logger.info(
+        String.format(
+            "Reading parquet file %s with %d row groups using %d decoder threads",
+            location, rowGroups.size(), decoderThreads));
+  }
+
+  @Override
+  protected List<String> readNextBatch() throws IOException {
+    while (pendingDocs.size() < batchSize) {
+      scheduleRowGroups();
+      RowGroup rowGroup = rowGroupsInFlight.poll();
+      if (rowGroup == null) {
+        break;
+      }
+      pendingDocs.addAll(awaitRowGroup(rowGroup.jsonDocs));
+      bytesInFlight -= rowGroup.size;
+    }
+    List<String> jsonRecords = new ArrayList<>(Math.min(batchSize, pendingDocs.size()));
+    while (jsonRecords.size() < batchSize && !pendingDocs.isEmpty()) {
+      jsonRecords.add(pendingDocs.poll());
+    }
+    totalRecords += jsonRecords.size();
+    return jsonRecords;
+  }
+
+  private void scheduleRowGroups() {
+    while (rowGroupsInFlight.size() < maxRowGroupsInFlight && nextRowGroup < rowGroups.size()) {
+      BlockMetaData rowGroup = rowGroups.get(nextRowGroup);
+      long size = rowGroup.getTotalByteSize();
+      if (!rowGroupsInFlight.isEmpty() && bytesInFlight + size > maxBytesInFlight) {
+        break;
+      }
+      nextRowGroup++;
+      rowGroupsInFlight.add(
+          new RowGroup(size, rowGroupDecoders.submit(() -> decodeRowGroup(rowGroup))));
+      bytesInFlight += size;
+    }
+  }
+
+  private List<String> awaitRowGroup(Future<List<String>> rowGroup) throws IOException {
+    try {
+      return rowGroup.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while decoding " + location, e);
+    } catch (ExecutionException e) {
+      throw new IOException("Decoding " + location + " failed", e.getCause());
+    }
+  }
+
+  private List<String> decodeRowGroup(BlockMetaData rowGroup) throws IOException {
+    // Parquet only reads row groups whose mid point falls in the given range
+    long start = rowGroup.getStartingPos();
+    ParquetReadOptions options =
+        ParquetReadOptions.builder().withRange(start, start + rowGroup.getCompressedSize()).build();
+    List<String> jsonRecords = new ArrayList<>((int) rowGroup.getRowCount());
+    try (ParquetFileReader reader = ParquetFileReader.open(inputFile, options)) {
+      PageReadStore pages = reader.readNextRowGroup();
+      if (pages == null) {
+        return jsonRecords;
+      }
+      MessageColumnIO columnIO = new ColumnIOFactory().getColumnIO(schema);
+      RecordReader<Group> recordReader =
+          columnIO.getRecordReader(pages, new GroupRecordConverter(schema));
+      for (long i = 0; i < pages.getRowCount(); i++) {
+        JSONObject jsonDoc = toJson(recordReader.read(), schema);
+        jsonRecords.add(jsonDoc.toString());
+      }
+    }
+    return jsonRecords;
+  }
+
+  private static JSONObject toJson(Group group, GroupType groupType) {
+    JSONObject jsonObject = new JSONObject();
+    for (int field = 0; field < groupType.getFieldCount(); field++) {
+      Type fieldType = groupType.getType(field);
+      int repetitionCount = group.getFieldRepetitionCount(field);
+      if (fieldType.isRepetition(Type.Repetition.REPEATED)) {
+        JSONArray values = new JSONArray();
+        for (int index = 0; index < repetitionCount; index++) {
+          values.put(toJsonValue(group, field, index, fieldType));
+        }
+        jsonObject.put(fieldType.getName(), values);
+      } else if (repetitionCount == 0) {
+        jsonObject.put(fieldType.getName(), JSONObject.NULL);
+      } else {
+        jsonObject.put(fieldType.getName(), toJsonValue(group, field, 0, fieldType));
+      }
+    }
+    return jsonObject;
+  }
+
+  private static Object toJsonValue(Group group, int field, int index, Type fieldType) {
+    if (!fieldType.isPrimitive()) {
+      LogicalTypeAnnotation annotation = fieldType.getLogicalTypeAnnotation();
+      if (annotation instanceof ListLogicalTypeAnnotation) {
+        return toJsonArray(group.getGroup(field, index), fieldType.asGroupType());
+      }
+      if (annotation instanceof MapLogicalTypeAnnotation
+          || annotation instanceof MapKeyValueTypeAnnotation) {
+        return toJsonMap(group.getGroup(field, index), fieldType.asGroupType());
+      }
+      return toJson(group.getGroup(field, index), fieldType.asGroupType());
+    }
+    LogicalTypeAnnotation annotation = fieldType.getLogicalTypeAnnotation();
+    switch (fieldType.asPrimitiveType().getPrimitiveTypeName()) {
+      case INT32:
+        return toJsonValue(group.getInteger(field, index), annotation);
+      case INT64:
+        return toJsonValue(group.getLong(field, index), annotation);
+      case BOOLEAN:
+        return group.getBoolean(field, index);
+      case FLOAT:
+        float floatValue = group.getFloat(field, index);
+        // json has no NaN or infinity, they are kept as strings
+        return Float.isFinite(floatValue) ? floatValue : String.valueOf(floatValue);
+      case DOUBLE:
+        double doubleValue = group.getDouble(field, index);
+        return Double.isFinite(doubleValue) ? doubleValue : String.valueOf(doubleValue);
+      case INT96:
+        return toTimestamp(group.getInt96(field, index).getBytes());
+      default:
+        if (annotation instanceof DecimalLogicalTypeAnnotation) {
+          return new BigDecimal(
+              new BigInteger(group.getBinary(field, index).getBytes()),
+              ((DecimalLogicalTypeAnnotation) annotation).getScale());
+        }
+        if (annotation instanceof StringLogicalTypeAnnotation
+            || annotation instanceof EnumLogicalTypeAnnotation
+            || annotation instanceof JsonLogicalTypeAnnotation) {
+          return group.getString(field, index);
+        }
+        return Base64.getEncoder().encodeToString(group.getBinary(field, index).getBytes());
+    }
+  }
+
+  private static Object toJsonValue(int value, LogicalTypeAnnotation annotation) {
+    if (annotation instanceof DecimalLogicalTypeAnnotation) {
+      return BigDecimal.valueOf(value, ((DecimalLogicalTypeAnnotation) annotation).getScale());
+    }
+    if (annotation instanceof DateLogicalTypeAnnotation) {
+      return LocalDate.ofEpochDay(value).toString();
+    }
+    if (annotation instanceof TimeLogicalTypeAnnotation) {
+      return LocalTime.ofNanoOfDay(value * 1_000_000L).toString();
+    }
+    if (annotation instanceof IntLogicalTypeAnnotation
+        && !((IntLogicalTypeAnnotation) annotation).isSigned()) {
+      return Integer.toUnsignedLong(value);
+    }
+    return value;
+  }
+
+  private static Object toJsonValue(long value, LogicalTypeAnnotation annotation) {
+    if (annotation instanceof DecimalLogicalTypeAnnotation) {
+      return BigDecimal.valueOf(value, ((DecimalLogicalTypeAnnotation) annotation).getScale());
+    }
+    if (annotation instanceof TimestampLogicalTypeAnnotation) {
+      TimestampLogicalTypeAnnotation timestamp = (TimestampLogicalTypeAnnotation) annotation;
+      Instant instant = toInstant(value, timestamp.getUnit());
+      return timestamp.isAdjustedToUTC()
+          ? instant.toString()
+          : LocalDateTime.ofInstant(instant, ZoneOffset.UTC).toString();
+    }
+    if (annotation instanceof TimeLogicalTypeAnnotation) {
+      TimeUnit unit = ((TimeLogicalTypeAnnotation) annotation).getUnit();
+      return LocalTime.ofNanoOfDay(unit == TimeUnit.MICROS ? value * 1000 : value).toString();
+    }
+    if (annotation instanceof IntLogicalTypeAnnotation
+        && !((IntLogicalTypeAnnotation) annotation).isSigned()) {
+      return new BigInteger(Long.toUnsignedString(value));
+    }
+    return value;
+  }
+
+  private static Instant toInstant(long value, TimeUnit unit) {
+    switch (unit) {
+      case MILLIS:
+        return Instant.ofEpochMilli(value);
+      case MICROS:
+        return Instant.ofEpochSecond(
+            Math.floorDiv(value, 1_000_000L), Math.floorMod(value, 1_000_000L) * 1000);
+      default:
+        return Instant.ofEpochSecond(
+            Math.floorDiv(value, 1_000_000_000L), Math.floorMod(value, 1_000_000_000L));
+    }
+  }
+
+  /** INT96 timestamps hold the nanoseconds of the day and then the julian day, little endian. */
+  private static String toTimestamp(byte[] int96) {
+    ByteBuffer buffer = ByteBuffer.wrap(int96).order(ByteOrder.LITTLE_ENDIAN);
+    long nanosOfDay = buffer.getLong();
+    long julianDay = buffer.getInt();
+    return Instant.ofEpochSecond((julianDay - JULIAN_DAY_OF_EPOCH) * 86400, nanosOfDay).toString();
+  }
+
+  private static JSONArray toJsonArray(Group list, GroupType listType) {
+    JSONArray values = new JSONArray();
+    Type repeatedType = listType.getType(0);
+    for (int index = 0; index < list.getFieldRepetitionCount(0); index++) {
+      if (!isElementWrapper(repeatedType, listType.getName())) {
+        values.put(toJsonValue(list, 0, index, repeatedType));
+        continue;
+      }
+      Group element = list.getGroup(0, index);
+      values.put(
+          element.getFieldRepetitionCount(0) == 0
+              ? JSONObject.NULL
+              : toJsonValue(element, 0, 0, repeatedType.asGroupType().getType(0)));
+    }
+    return values;
+  }
+
+  /**
+   * Following the parquet backward compatibility rules, the repeated group of a LIST wraps the
+   * element when it has a single field and is not named array or listName_tuple.
+   */
+  private static boolean isElementWrapper(Type repeatedType, String listName) {
+    return !repeatedType.isPrimitive()
+        && repeatedType.asGroupType().getFieldCount() == 1
+        && !repeatedType.getName().equals("array")
+        && !repeatedType.getName().equals(listName + "_tuple");
+  }
+
+  private static JSONObject toJsonMap(Group map, GroupType mapType) {
+    JSONObject entries = new JSONObject();
+    GroupType keyValueType = mapType.getType(0).asGroupType();
+    for (int index = 0; index < map.getFieldRepetitionCount(0); index++) {
+      Group keyValue = map.getGroup(0, index);
+      String key = String.valueOf(toJsonValue(keyValue, 0, 0, keyValueType.getType(0)));
+      boolean hasValue =
+          keyValueType.getFieldCount() > 1 && keyValue.getFieldRepetitionCount(1) > 0;
+      entries.put(
+          key, hasValue ? toJsonValue(keyValue, 1, 0, keyValueType.getType(1)) : JSONObject.NULL);
+    }
+    return entries;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    boolean isReadCompletely =
+        nextRowGroup == rowGroups.size() && rowGroupsInFlight.isEmpty() && pendingDocs.isEmpty();
+    for (RowGroup rowGroup : rowGroupsInFlight) {
+      rowGroup.jsonDocs.cancel(true);
+    }
+    rowGroupsInFlight.clear();
+    pendingDocs.clear();
+    rowGroupDecoders.shutdownNow();
+    logger.info("Total loaded records from " + location + " : " + totalRecords);
+    if (inputFile instanceof RangeReadInputFile) {
+      ((RangeReadInputFile) inputFile).close(isReadCompletely);
+    }
+  }
+
+  private static class RowGroup {
+    private final long size;
+    private final Future<List<String>> jsonDocs;
+
+    RowGroup(long size, Future<List<String>> jsonDocs) {
+      this.size = size;
+      this.jsonDocs = jsonDocs;
+    }
+  }
+}
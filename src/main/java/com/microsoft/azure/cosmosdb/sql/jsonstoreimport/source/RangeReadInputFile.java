@@ -0,0 +1,153 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.SeekableInputStream;
+
+/**
+ * Parquet input file on top of positional range reads, so parquet footers and row groups can be
+ * read from local files, ADL and Azure Blob without a Hadoop file system.
+ */
+public class RangeReadInputFile implements InputFile {
+
+  private static final int READ_BUFFER_SIZE = 1024 * 1024;
+  private final long length;
+  private final RangedInputStream.RangeReader rangeReader;
+
+  public RangeReadInputFile(long length, RangedInputStream.RangeReader rangeReader) {
+    this.length = length;
+    this.rangeReader = rangeReader;
+  }
+
+  @Override
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * Ends reading the file. A file read through the source file cache is added to it when it was
+   * read completely, and dropped from it otherwise.
+   */
+  public void close(boolean isReadCompletely) throws IOException {
+    if (!(rangeReader instanceof SourceFileCache.CachingRangeReader)) {
+      return;
+    }
+    SourceFileCache.CachingRangeReader cachingRangeReader =
+        (SourceFileCache.CachingRangeReader) rangeReader;
+    if (isReadCompletely) {
+      cachingRangeReader.complete();
+    } else {
+      cachingRangeReader.abandon();
+    }
+  }
+
+  @Override
+  public SeekableInputStream newStream() {
+    return new RangeReadSeekableInputStream();
+  }
+
+  private class RangeReadSeekableInputStream extends SeekableInputStream {
+    private long position;
+    private byte[] buffer = new byte[0];
+    private long bufferStart;
+
+    @Override
+    public long getPos() {
+      return position;
+    }
+
+    @Override
+    public void seek(long newPosition) {
+      this.position = newPosition;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      int read = read(single, 0, 1);
+      return read < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (position >= length) {
+        return -1;
+      }
+      if (position < bufferStart || position >= bufferStart + buffer.length) {
+        if (len >= READ_BUFFER_SIZE) {
+          // large reads such as column chunks bypass the buffer
+          int toRead = (int) Math.min(len, length - position);
+          byte[] range = rangeReader.read(position, toRead);
+          System.arraycopy(range, 0, b, off, toRead);
+          position += toRead;
+          return toRead;
+        }
+        bufferStart = position;
+        buffer = rangeReader.read(position, (int) Math.min(READ_BUFFER_SIZE, length - position));
+      }
+      int offsetInBuffer = (int) (position - bufferStart);
+      int toCopy = Math.min(len, buffer.length - offsetInBuffer);
+      System.arraycopy(buffer, offsetInBuffer, b, off, toCopy);
+      position += toCopy;
+      return toCopy;
+    }
+
+    @Override
+    public void readFully(byte[] bytes) throws IOException {
+      readFully(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void readFully(byte[] bytes, int start, int len) throws IOException {
+      int totalRead = 0;
+      while (totalRead < len) {
+        int read = read(bytes, start + totalRead, len - totalRead);
+        if (read < 0) {
+          throw new EOFException("Reached end of file at " + position);
+        }
+        totalRead += read;
+      }
+    }
+
+    @Override
+    public int read(ByteBuffer byteBuffer) throws IOException {
+      byte[] bytes = new byte[byteBuffer.remaining()];
+      int read = read(bytes, 0, bytes.length);
+      if (read > 0) {
+        byteBuffer.put(bytes, 0, read);
+      }
+      return read;
+    }
+
+    @Override
+    public void readFully(ByteBuffer byteBuffer) throws IOException {
+      byte[] bytes = new byte[byteBuffer.remaining()];
+      readFully(bytes);
+      byteBuffer.put(bytes);
+    }
+  }
+}
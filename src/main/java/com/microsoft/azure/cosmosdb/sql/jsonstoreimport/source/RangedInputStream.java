@@ -0,0 +1,136 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.log4j.Logger;
+
+/**
+ * Splits a remote file into byte ranges which are fetched concurrently and exposes them again as
+ * one sequential stream, so line boundaries spanning two ranges are reassembled by the reader on
+ * top of it.
+ */
+public class RangedInputStream extends InputStream {
+
+  /** Fetches a single byte range of a remote file. */
+  public interface RangeReader {
+    byte[] read(long offset, int length) throws IOException;
+  }
+
+  private static final Logger logger = Logger.getLogger(RangedInputStream.class);
+  private final String name;
+  private final long fileSize;
+  private final int chunkSize;
+  private final int concurrency;
+  private final RangeReader rangeReader;
+  private final ExecutorService rangeFetchers;
+  private final Queue<Future<byte[]>> rangesInFlight = new ArrayDeque<>();
+  private long nextRangeOffset;
+  private byte[] currentRange;
+  private int currentRangePosition;
+  private boolean isClosed;
+
+  public RangedInputStream(
+      String name, long fileSize, int chunkSize, int concurrency, RangeReader rangeReader) {
+    this.name = name;
+    this.fileSize = fileSize;
+    this.chunkSize = chunkSize;
+    this.concurrency = concurrency;
+    this.rangeReader = rangeReader;
+    this.rangeFetchers = Executors.newFixedThreadPool(concurrency);
+    logger.info(
+        String.format(
+            "Fetching %s of %d bytes in ranges of %d bytes, %d at a time",
+            name, fileSize, chunkSize, concurrency));
+  }
+
+  private void scheduleRanges() {
+    while (rangesInFlight.size() < concurrency && nextRangeOffset < fileSize) {
+      long offset = nextRangeOffset;
+      int length = (int) Math.min(chunkSize, fileSize - offset);
+      nextRangeOffset += length;
+      rangesInFlight.add(rangeFetchers.submit(() -> rangeReader.read(offset, length)));
+    }
+  }
+
+  private boolean nextRange() throws IOException {
+    scheduleRanges();
+    Future<byte[]> range = rangesInFlight.poll();
+    if (range == null) {
+      return false;
+    }
+    try {
+      currentRange = range.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching a range of " + name);
+    } catch (ExecutionException e) {
+      throw new IOException("Fetching a range of " + name + " failed", e.getCause());
+    }
+    currentRangePosition = 0;
+    // keep the fetchers busy while the current range is consumed
+    scheduleRanges();
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] single = new byte[1];
+    int read = read(single, 0, 1);
+    return read < 0 ? -1 : single[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    while (currentRange == null || currentRangePosition == currentRange.length) {
+      if (!nextRange()) {
+        return -1;
+      }
+    }
+    int length = Math.min(len, currentRange.length - currentRangePosition);
+    System.arraycopy(currentRange, currentRangePosition, b, off, length);
+    currentRangePosition += length;
+    return length;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    for (Future<byte[]> range : rangesInFlight) {
+      range.cancel(true);
+    }
+    rangesInFlight.clear();
+    rangeFetchers.shutdownNow();
+  }
+}
@@ -0,0 +1,160 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the wrapped stream on a background thread into a bounded queue of chunks, so network
+ * transfer overlaps with whatever consumes this stream.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+  private static final byte[] END_OF_STREAM = new byte[0];
+  private final InputStream in;
+  private final int chunkSize;
+  private final BlockingQueue<byte[]> chunks;
+  private final Thread fillThread;
+  private volatile IOException failure;
+  private volatile boolean isClosed;
+  private byte[] currentChunk;
+  private int currentChunkPosition;
+  private boolean isEndOfStream;
+
+  public ReadAheadInputStream(InputStream in, int chunkSize, int chunksAhead, String name) {
+    this.in = in;
+    this.chunkSize = chunkSize;
+    this.chunks = new ArrayBlockingQueue<>(chunksAhead);
+    this.fillThread = new Thread(this::fill, "read-ahead-" + name);
+    this.fillThread.setDaemon(true);
+    this.fillThread.start();
+  }
+
+  private void fill() {
+    try {
+      byte[] chunk;
+      while (!isClosed && (chunk = readChunk()) != null) {
+        chunks.put(chunk);
+      }
+    } catch (IOException e) {
+      failure = e;
+    } catch (InterruptedException e) {
+      if (isClosed) {
+        return;
+      }
+      failure = new InterruptedIOException("Read ahead was interrupted");
+    } catch (Throwable e) {
+      // anything else, such as a decompressor error, still has to end the stream for the consumer
+      failure = new IOException("Read ahead failed", e);
+    }
+    if (isClosed) {
+      return;
+    }
+    try {
+      chunks.put(END_OF_STREAM);
+    } catch (InterruptedException e) {
+      // closed while waiting for the consumer
+    }
+  }
+
+  private byte[] readChunk() throws IOException {
+    byte[] chunk = new byte[chunkSize];
+    int length = 0;
+    while (length < chunkSize) {
+      int read = in.read(chunk, length, chunkSize - length);
+      if (read < 0) {
+        break;
+      }
+      length += read;
+    }
+    if (length == 0) {
+      return null;
+    }
+    return length == chunkSize ? chunk : Arrays.copyOf(chunk, length);
+  }
+
+  private boolean nextChunk() throws IOException {
+    if (isEndOfStream) {
+      return false;
+    }
+    try {
+      currentChunk = chunks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for read ahead data");
+    }
+    currentChunkPosition = 0;
+    if (currentChunk == END_OF_STREAM) {
+      isEndOfStream = true;
+      if (failure != null) {
+        throw failure;
+      }
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] single = new byte[1];
+    int read = read(single, 0, 1);
+    return read < 0 ? -1 : single[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (currentChunk == null || currentChunkPosition == currentChunk.length) {
+      if (!nextChunk()) {
+        return -1;
+      }
+    }
+    int length = Math.min(len, currentChunk.length - currentChunkPosition);
+    System.arraycopy(currentChunk, currentChunkPosition, b, off, length);
+    currentChunkPosition += length;
+    return length;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    fillThread.interrupt();
+    chunks.clear();
+    try {
+      // the fill thread may be inside in.read, which must not race with in.close
+      fillThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while stopping read ahead");
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Hands out the documents of a source reader in batches of a size that may change between
+ * batches, independent of the batch size the source reads with. Documents keep their order.
+ */
+public class RebatchingJsonDocBatchReader extends JsonDocBatchReader {
+
+  private final JsonDocBatchReader source;
+  private final IntSupplier batchSize;
+  private List<String> sourceBatch;
+  private int sourceIndex;
+
+  public RebatchingJsonDocBatchReader(JsonDocBatchReader source, IntSupplier batchSize) {
+    this.source = source;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  protected List<String> readNextBatch() throws IOException {
+    int size = Math.max(1, batchSize.getAsInt());
+    List<String> batch = new ArrayList<>(size);
+    while (batch.size() < size) {
+      if (sourceBatch == null || sourceIndex == sourceBatch.size()) {
+        if (!hasNextSourceBatch()) {
+          break;
+        }
+        sourceBatch = source.next();
+        sourceIndex = 0;
+      }
+      int end = Math.min(sourceBatch.size(), sourceIndex + size - batch.size());
+      batch.addAll(sourceBatch.subList(sourceIndex, end));
+      sourceIndex = end;
+    }
+    if (sourceBatch != null && sourceIndex == sourceBatch.size()) {
+      sourceBatch = null;
+    }
+    return batch;
+  }
+
+  private boolean hasNextSourceBatch() throws IOException {
+    try {
+      return source.hasNext();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    sourceBatch = null;
+    source.close();
+  }
+}
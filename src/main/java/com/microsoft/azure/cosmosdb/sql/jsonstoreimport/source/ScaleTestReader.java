@@ -20,7 +20,10 @@
 package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
 
 import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.transform.TransformStage;
+import java.io.FileInputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -31,16 +34,21 @@ public class ScaleTestReader {
   private static Queue<ArrayList<String>> preCookedData = new LinkedList<>();
 
   private static ArrayList<String> prepareJsonTestData() throws Exception {
-    List<String> jsonSampleDocs = FileReader.getJsonDocs("template.json");
+    List<String> jsonSampleDocs = new ArrayList<>();
+    try (JsonDocBatchReader templateReader =
+        new JsonStreamDocBatchReader("template.json", new FileInputStream("template.json"), 2)) {
+      templateReader.forEachRemaining(jsonSampleDocs::addAll);
+    }
     if (jsonSampleDocs.size() != 1) {
-      throw new Exception("Template should have well formatted json string in a single line.");
+      throw new Exception("Template should have exactly one well formatted json document.");
     }
 
     final long startTime = System.currentTimeMillis();
-    ArrayList<String> jsonRecords = new ArrayList<>();
-    for (int i = 0; i < Settings.getJsonDocsBatchCount(); i++) {
-      jsonRecords.add(Settings.applyIdAndPartitionKeySettings(jsonSampleDocs.get(0)).toString());
-    }
+    ArrayList<String> jsonRecords =
+        new ArrayList<>(
+            TransformStage.transform(
+                "template.json",
+                Collections.nCopies(Settings.getJsonDocsBatchCount(), jsonSampleDocs.get(0))));
     logger.info("Total loaded records : " + jsonRecords.size());
     long endTime = System.currentTimeMillis();
     long totalTime = endTime - startTime;
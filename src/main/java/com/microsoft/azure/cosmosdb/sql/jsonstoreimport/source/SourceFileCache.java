@@ -0,0 +1,387 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import com.google.common.hash.Hashing;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.log4j.Logger;
+
+/**
+ * Read-through cache of remote source files on local disk, enabled by sourceFileCacheFolder.
+ * Entries are keyed by location and a version of the remote file (ETag, or length and modified
+ * time), so a changed file is never served stale. A file is streamed to the consumer while it is
+ * written to the cache and only becomes visible once it was read completely. Parquet files are
+ * cached range by range as the reader fetches them. Files larger than sourceFileCacheMaxSizeInMb
+ * are never cached, and least recently used entries are evicted when the cache grows beyond it.
+ *
+ * <p>Byte-range work items of split files read their range remotely and bypass the cache.
+ */
+public class SourceFileCache {
+
+  /** Opens the remote file when it is not cached. */
+  public interface RemoteSource {
+    InputStream open() throws IOException;
+  }
+
+  private static final Logger logger = Logger.getLogger(SourceFileCache.class);
+  private static final String DOWNLOAD_SUFFIX = ".download";
+  // Cached files and their sizes in access order, least recently used first
+  private static final Map<Path, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private static Path cacheFolder;
+  private static long totalSize;
+
+  public static boolean isEnabled() {
+    return Settings.getSourceFileCacheFolder() != null;
+  }
+
+  /**
+   * Returns the cached file, or a stream of the remote file that fills the cache as it is read.
+   * Files of more than sourceFileCacheMaxSizeInMb are streamed without caching them.
+   */
+  public static InputStream open(
+      String location, String version, long size, RemoteSource remoteSource) throws IOException {
+    Path cachedFile = lookup(location, version);
+    if (cachedFile != null) {
+      logger.info("Reading " + location + " from local cache " + cachedFile);
+      return Files.newInputStream(cachedFile);
+    }
+    if (!fits(size)) {
+      return remoteSource.open();
+    }
+    Path downloadFile = Files.createTempFile(cacheFolder, "source-", DOWNLOAD_SUFFIX);
+    return new CachingInputStream(remoteSource.open(), downloadFile, cacheFile(location, version));
+  }
+
+  /** Returns the cached file, or null when it is not cached. */
+  public static Path getCachedFile(String location, String version) throws IOException {
+    Path cachedFile = lookup(location, version);
+    if (cachedFile != null) {
+      logger.info("Reading " + location + " from local cache " + cachedFile);
+    }
+    return cachedFile;
+  }
+
+  /**
+   * Returns a range reader of a file that is not cached. Ranges are read from remoteRanges as the
+   * consumer asks for them and written to a download file at their offsets, see {@link
+   * CachingRangeReader}. Files of more than sourceFileCacheMaxSizeInMb are read without caching.
+   */
+  public static RangedInputStream.RangeReader cacheRanges(
+      String location, String version, long size, RangedInputStream.RangeReader remoteRanges)
+      throws IOException {
+    init();
+    if (!fits(size)) {
+      return remoteRanges;
+    }
+    Path downloadFile = Files.createTempFile(cacheFolder, "source-", DOWNLOAD_SUFFIX);
+    return new CachingRangeReader(remoteRanges, size, downloadFile, cacheFile(location, version));
+  }
+
+  private static boolean fits(long size) {
+    return size <= Settings.getSourceFileCacheMaxSizeInMb() * 1024L * 1024L;
+  }
+
+  private static synchronized Path lookup(String location, String version) throws IOException {
+    init();
+    Path cachedFile = cacheFile(location, version);
+    if (entries.get(cachedFile) == null) {
+      return null;
+    }
+    if (!Files.exists(cachedFile)) {
+      totalSize -= entries.remove(cachedFile);
+      return null;
+    }
+    return cachedFile;
+  }
+
+  private static synchronized void add(Path cachedFile, long size) throws IOException {
+    if (!fits(size)) {
+      Files.deleteIfExists(cachedFile);
+      return;
+    }
+    Long previousSize = entries.put(cachedFile, size);
+    totalSize += size - (previousSize == null ? 0 : previousSize);
+    Iterator<Map.Entry<Path, Long>> leastRecentlyUsed = entries.entrySet().iterator();
+    while (!fits(totalSize) && leastRecentlyUsed.hasNext()) {
+      Map.Entry<Path, Long> entry = leastRecentlyUsed.next();
+      try {
+        Files.deleteIfExists(entry.getKey());
+        totalSize -= entry.getValue();
+        leastRecentlyUsed.remove();
+        logger.info("Evicted " + entry.getKey() + " from local cache");
+      } catch (IOException e) {
+        // Still open on platforms that do not allow deleting open files, try again later
+        logger.warn("Evicting " + entry.getKey() + " failed due to " + e.getMessage());
+      }
+    }
+  }
+
+  private static void init() throws IOException {
+    if (cacheFolder != null) {
+      return;
+    }
+    Path folder = Paths.get(Settings.getSourceFileCacheFolder());
+    Files.createDirectories(folder);
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(folder)) {
+      files = listing.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+    // Rebuild the access order from modified times, dropping downloads of an earlier run
+    files.sort(Comparator.comparingLong(file -> file.toFile().lastModified()));
+    for (Path file : files) {
+      if (file.toString().endsWith(DOWNLOAD_SUFFIX)) {
+        Files.deleteIfExists(file);
+      } else {
+        entries.put(file, Files.size(file));
+        totalSize += Files.size(file);
+      }
+    }
+    cacheFolder = folder;
+    logger.info(
+        String.format(
+            "Local cache %s holds %d files, %d bytes", folder, entries.size(), totalSize));
+  }
+
+  private static Path cacheFile(String location, String version) {
+    // Keep the extension so format and compression are still detected from the file name
+    String name = location.substring(location.lastIndexOf('/') + 1);
+    int extensionStart = name.lastIndexOf('.');
+    String extension = extensionStart < 0 ? "" : name.substring(extensionStart).toLowerCase();
+    String key =
+        Hashing.sha256().hashString(location + "|" + version, StandardCharsets.UTF_8).toString();
+    return cacheFolder.resolve(key + extension);
+  }
+
+  /** Copies everything read from the remote stream into the download file. */
+  private static class CachingInputStream extends FilterInputStream {
+    private final Path downloadFile;
+    private final Path cachedFile;
+    private OutputStream cacheOut;
+    private long size;
+
+    CachingInputStream(InputStream in, Path downloadFile, Path cachedFile) throws IOException {
+      super(in);
+      this.downloadFile = downloadFile;
+      this.cachedFile = cachedFile;
+      this.cacheOut = new BufferedOutputStream(Files.newOutputStream(downloadFile), 1024 * 1024);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b < 0) {
+        complete();
+      } else if (cacheOut != null) {
+        write(new byte[] {(byte) b}, 0, 1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = in.read(b, off, len);
+      if (read < 0) {
+        complete();
+      } else if (read > 0 && cacheOut != null) {
+        write(b, off, read);
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // Skipped bytes still have to reach the cache
+      byte[] buffer = new byte[(int) Math.min(n, 64 * 1024)];
+      long skipped = 0;
+      while (skipped < n) {
+        int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+        if (read < 0) {
+          break;
+        }
+        skipped += read;
+      }
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    private void write(byte[] b, int off, int len) {
+      try {
+        cacheOut.write(b, off, len);
+        size += len;
+      } catch (IOException e) {
+        // A full or failing cache disk must not fail ingestion
+        logger.warn("Caching " + cachedFile + " failed due to " + e.getMessage());
+        abandon();
+      }
+    }
+
+    private void complete() throws IOException {
+      if (cacheOut == null) {
+        return;
+      }
+      cacheOut.close();
+      cacheOut = null;
+      Files.move(downloadFile, cachedFile, StandardCopyOption.REPLACE_EXISTING);
+      add(cachedFile, size);
+    }
+
+    private void abandon() {
+      if (cacheOut == null) {
+        return;
+      }
+      try {
+        cacheOut.close();
+        Files.deleteIfExists(downloadFile);
+      } catch (IOException e) {
+        logger.warn("Deleting " + downloadFile + " failed due to " + e.getMessage());
+      }
+      cacheOut = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+      // A partially read file is never added to the cache
+      abandon();
+      super.close();
+    }
+  }
+
+  /**
+   * Writes every range read from the remote file to the download file at its offset. Parquet
+   * readers fetch the footer first and then the row groups, possibly from several threads. Once
+   * the file was read completely, {@link #complete()} downloads the few bytes no reader asked for
+   * and adds the file to the cache, {@link #abandon()} drops a partially read file.
+   */
+  public static class CachingRangeReader implements RangedInputStream.RangeReader {
+    private final RangedInputStream.RangeReader remoteRanges;
+    private final long size;
+    private final Path downloadFile;
+    private final Path cachedFile;
+    private final RangeSet<Long> cachedRanges = TreeRangeSet.create();
+    private FileChannel cacheOut;
+
+    CachingRangeReader(
+        RangedInputStream.RangeReader remoteRanges, long size, Path downloadFile, Path cachedFile)
+        throws IOException {
+      this.remoteRanges = remoteRanges;
+      this.size = size;
+      this.downloadFile = downloadFile;
+      this.cachedFile = cachedFile;
+      this.cacheOut = FileChannel.open(downloadFile, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public byte[] read(long offset, int length) throws IOException {
+      byte[] range = remoteRanges.read(offset, length);
+      write(offset, range);
+      return range;
+    }
+
+    private synchronized void write(long offset, byte[] range) {
+      if (cacheOut == null || range.length == 0) {
+        return;
+      }
+      try {
+        ByteBuffer buffer = ByteBuffer.wrap(range);
+        while (buffer.hasRemaining()) {
+          cacheOut.write(buffer, offset + buffer.position());
+        }
+        cachedRanges.add(Range.closedOpen(offset, offset + range.length));
+      } catch (IOException e) {
+        // A full or failing cache disk must not fail ingestion
+        logger.warn("Caching " + cachedFile + " failed due to " + e.getMessage());
+        abandon();
+      }
+    }
+
+    /** Fills the ranges that were never read and adds the file to the cache. */
+    public void complete() throws IOException {
+      List<Range<Long>> missingRanges;
+      synchronized (this) {
+        if (cacheOut == null) {
+          return;
+        }
+        missingRanges =
+            new ArrayList<>(
+                cachedRanges.complement().subRangeSet(Range.closedOpen(0L, size)).asRanges());
+      }
+      int chunkSize = Settings.getRangedReadChunkSizeInMb() * 1024 * 1024;
+      for (Range<Long> missingRange : missingRanges) {
+        long offset = missingRange.lowerEndpoint();
+        while (offset < missingRange.upperEndpoint()) {
+          int length = (int) Math.min(chunkSize, missingRange.upperEndpoint() - offset);
+          read(offset, length);
+          offset += length;
+        }
+      }
+      synchronized (this) {
+        if (cacheOut == null) {
+          return;
+        }
+        cacheOut.close();
+        cacheOut = null;
+        Files.move(downloadFile, cachedFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+      add(cachedFile, size);
+    }
+
+    /** Deletes the download file, a partially read file is never added to the cache. */
+    public synchronized void abandon() {
+      if (cacheOut == null) {
+        return;
+      }
+      try {
+        cacheOut.close();
+        Files.deleteIfExists(downloadFile);
+      } catch (IOException e) {
+        logger.warn("Deleting " + downloadFile + " failed due to " + e.getMessage());
+      }
+      cacheOut = null;
+    }
+  }
+}
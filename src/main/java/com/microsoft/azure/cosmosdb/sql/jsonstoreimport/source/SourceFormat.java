@@ -0,0 +1,47 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+
+/** Represents format of the source files, independent of the store they are read from. */
+public enum SourceFormat {
+  AUTO,
+  JSON_LINES,
+  JSON,
+  PARQUET,
+  AVRO;
+
+  /** Resolves the format of a file from sourceFormat setting or its extension. */
+  public static SourceFormat of(String fileName) {
+    SourceFormat sourceFormat = Settings.getSourceFormat();
+    if (sourceFormat != AUTO) {
+      return sourceFormat;
+    }
+    String lowerCaseName = fileName.toLowerCase();
+    if (lowerCaseName.endsWith(".parquet")) {
+      return PARQUET;
+    }
+    if (lowerCaseName.endsWith(".avro")) {
+      return AVRO;
+    }
+    return JSON_LINES;
+  }
+}
@@ -0,0 +1,107 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.transform;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.RejectOutput;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink.RejectOutput.Reason;
+import java.io.IOException;
+
+/**
+ * Screens documents before they are imported. A document is rejected when it is not a single
+ * well formed json object, when the transform fails on it, or when its serialized size exceeds
+ * maxDocumentSizeInBytes. Rejected documents go to the {@link RejectOutput} of their source
+ * instead of failing the batch they were read in.
+ */
+public class DocumentScreen {
+
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
+  /** Returns the transformed document, or null when it was rejected. */
+  public static String screen(String source, String jsonDoc) {
+    return screen(source, jsonDoc, true);
+  }
+
+  /**
+   * Returns the transformed document, or null when it was rejected. Documents of sorted files keep
+   * their id and partition key, as the files are ordered by them.
+   */
+  public static String screen(String source, String jsonDoc, boolean isIdAndPartitionKeyPatched) {
+    try {
+      // A configured transform parses the whole document already
+      if (Settings.getValidateDocuments() && Settings.getDocumentTransform() == null) {
+        validate(jsonDoc);
+      }
+      jsonDoc = DocumentTransform.apply(jsonDoc, isIdAndPartitionKeyPatched);
+    } catch (JsonProcessingException e) {
+      RejectOutput.write(source, Reason.MALFORMED_JSON, e.getOriginalMessage(), jsonDoc);
+      return null;
+    } catch (IOException e) {
+      RejectOutput.write(source, Reason.TRANSFORM_FAILED, e.getMessage(), jsonDoc);
+      return null;
+    }
+    int maxSize = Settings.getMaxDocumentSizeInBytes();
+    // A char takes at most three bytes in utf-8, so only long documents have to be measured
+    if (jsonDoc.length() > maxSize / 3) {
+      int size = utf8Length(jsonDoc);
+      if (size > maxSize) {
+        RejectOutput.write(
+            source, Reason.OVERSIZE, size + " bytes exceed " + maxSize + " bytes", jsonDoc);
+        return null;
+      }
+    }
+    return jsonDoc;
+  }
+
+  private static void validate(String jsonDoc) throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(jsonDoc)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Expected a json object");
+      }
+      parser.skipChildren();
+      if (parser.nextToken() != null) {
+        throw new JsonParseException(parser, "Unexpected content after the json object");
+      }
+    }
+  }
+
+  private static int utf8Length(String text) {
+    int length = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c)) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+}
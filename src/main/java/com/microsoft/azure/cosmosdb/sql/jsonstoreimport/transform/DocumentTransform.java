@@ -0,0 +1,325 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.transform;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.IdAndPartitionKeyPatcher;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Declarative per document transform, compiled once from the transform settings into a list of
+ * steps over pre split field paths. Paths are dot separated top level or nested field names.
+ * Steps always run in this order, each setting being a comma separated list:
+ *
+ * <ul>
+ *   <li>transformCopy=source.path:target.path copies a value, creating the target parents
+ *   <li>transformRename=old.path:new.path moves a value
+ *   <li>transformConstants=path:value sets a string value, coerce it for other types. Values
+ *       holding commas are written as a quoted json string, path:"a,b"
+ *   <li>transformCoerce=path:type converts a value to string, int, long, double or boolean.
+ *       Numbers that do not fit the type are rejected instead of being truncated
+ *   <li>transformDrop=path removes a value
+ *   <li>transformProject=path keeps only the listed values
+ * </ul>
+ *
+ * <p>The id and partition key settings are applied to the transformed document.
+ */
+public class DocumentTransform {
+
+  // Decimals are kept as they were written, so coercions and the output do not round them
+  private static final ObjectMapper objectMapper =
+      new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+  private final List<Step> steps;
+
+  private DocumentTransform(List<Step> steps) {
+    this.steps = steps;
+  }
+
+  /**
+   * Applies the configured transform and the id and partition key settings to a json document.
+   */
+  public static String apply(String jsonDoc) throws IOException {
+    return apply(jsonDoc, true);
+  }
+
+  /**
+   * Applies the configured transform, and the id and partition key settings unless the document
+   * is already placed by its partition key.
+   */
+  public static String apply(String jsonDoc, boolean isIdAndPartitionKeyPatched)
+      throws IOException {
+    DocumentTransform documentTransform = Settings.getDocumentTransform();
+    if (documentTransform != null) {
+      jsonDoc = documentTransform.transform(jsonDoc);
+    }
+    return isIdAndPartitionKeyPatched ? IdAndPartitionKeyPatcher.apply(jsonDoc) : jsonDoc;
+  }
+
+  /** Compiles the transform settings, returns null when no step is configured. */
+  public static DocumentTransform compile(Properties spec) {
+    List<Step> steps = new ArrayList<>();
+    for (String[] pair : parsePairs(spec, "transformCopy")) {
+      String[] source = splitPath(pair[0]);
+      String[] target = splitPath(pair[1]);
+      steps.add(
+          doc -> {
+            JsonNode value = get(doc, source);
+            if (value != null) {
+              set(doc, target, value.deepCopy());
+            }
+          });
+    }
+    for (String[] pair : parsePairs(spec, "transformRename")) {
+      String[] source = splitPath(pair[0]);
+      String[] target = splitPath(pair[1]);
+      steps.add(
+          doc -> {
+            JsonNode value = remove(doc, source);
+            if (value != null) {
+              set(doc, target, value);
+            }
+          });
+    }
+    for (String[] pair : parsePairs(spec, "transformConstants")) {
+      String[] target = splitPath(pair[0]);
+      JsonNode value = JsonNodeFactory.instance.textNode(parseConstant(pair[1]));
+      steps.add(doc -> set(doc, target, value));
+    }
+    for (String[] pair : parsePairs(spec, "transformCoerce")) {
+      String[] path = splitPath(pair[0]);
+      Coercion coercion = Coercion.valueOf(pair[1].toUpperCase(Locale.ROOT));
+      steps.add(
+          doc -> {
+            JsonNode value = get(doc, path);
+            if (value != null && !value.isNull()) {
+              set(doc, path, coercion.coerce(pair[0], value));
+            }
+          });
+    }
+    for (String path : parseList(spec, "transformDrop")) {
+      String[] source = splitPath(path);
+      steps.add(doc -> remove(doc, source));
+    }
+    List<String[]> projectedPaths = new ArrayList<>();
+    for (String path : parseList(spec, "transformProject")) {
+      projectedPaths.add(splitPath(path));
+    }
+    if (!projectedPaths.isEmpty()) {
+      steps.add(
+          doc -> {
+            ObjectNode projected = doc.objectNode();
+            for (String[] path : projectedPaths) {
+              JsonNode value = get(doc, path);
+              if (value != null) {
+                set(projected, path, value);
+              }
+            }
+            doc.removeAll();
+            doc.setAll(projected);
+          });
+    }
+    return steps.isEmpty() ? null : new DocumentTransform(steps);
+  }
+
+  public String transform(String jsonDoc) throws IOException {
+    JsonNode doc = objectMapper.readTree(jsonDoc);
+    if (!(doc instanceof ObjectNode)) {
+      throw new IOException("Expected a json object but found " + doc.getNodeType());
+    }
+    for (Step step : steps) {
+      step.apply((ObjectNode) doc);
+    }
+    return objectMapper.writeValueAsString(doc);
+  }
+
+  private static JsonNode get(ObjectNode doc, String[] path) {
+    JsonNode node = doc;
+    for (String field : path) {
+      node = node.get(field);
+      if (node == null) {
+        return null;
+      }
+    }
+    return node;
+  }
+
+  private static void set(ObjectNode doc, String[] path, JsonNode value) throws IOException {
+    parentOf(doc, path, true).set(path[path.length - 1], value);
+  }
+
+  private static JsonNode remove(ObjectNode doc, String[] path) throws IOException {
+    ObjectNode parent = parentOf(doc, path, false);
+    return parent == null ? null : parent.remove(path[path.length - 1]);
+  }
+
+  private static ObjectNode parentOf(ObjectNode doc, String[] path, boolean isCreated)
+      throws IOException {
+    ObjectNode parent = doc;
+    for (int i = 0; i < path.length - 1; i++) {
+      JsonNode child = parent.get(path[i]);
+      if (child == null && isCreated) {
+        child = parent.putObject(path[i]);
+      }
+      if (child == null || (!child.isObject() && !isCreated)) {
+        return null;
+      }
+      if (!child.isObject()) {
+        throw new IOException(
+            "Field " + String.join(".", path) + " is nested in a " + child.getNodeType());
+      }
+      parent = (ObjectNode) child;
+    }
+    return parent;
+  }
+
+  private static String[] splitPath(String path) {
+    return path.trim().split("\\.");
+  }
+
+  private static String parseConstant(String value) {
+    if (!value.startsWith("\"")) {
+      return value;
+    }
+    try {
+      return objectMapper.readValue(value, String.class);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(
+          "transformConstants has a malformed quoted value " + value, e);
+    }
+  }
+
+  /** Splits a comma separated list, commas within double quotes are kept. */
+  private static List<String> parseList(Properties spec, String key) {
+    List<String> values = new ArrayList<>();
+    String value = spec.getProperty(key);
+    if (value == null) {
+      return values;
+    }
+    boolean isQuoted = false;
+    StringBuilder item = new StringBuilder();
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == ',' && !isQuoted) {
+        addItem(values, item);
+        continue;
+      }
+      if (c == '"') {
+        isQuoted = !isQuoted;
+      } else if (c == '\\' && isQuoted && i + 1 < value.length()) {
+        // Keep escaped quotes within the quoted value
+        item.append(c);
+        c = value.charAt(++i);
+      }
+      item.append(c);
+    }
+    addItem(values, item);
+    return values;
+  }
+
+  private static void addItem(List<String> values, StringBuilder item) {
+    if (!item.toString().trim().isEmpty()) {
+      values.add(item.toString().trim());
+    }
+    item.setLength(0);
+  }
+
+  private static List<String[]> parsePairs(Properties spec, String key) {
+    List<String[]> pairs = new ArrayList<>();
+    for (String item : parseList(spec, key)) {
+      int separator = item.indexOf(':');
+      if (separator <= 0) {
+        throw new IllegalArgumentException(key + " expects path:value pairs but found " + item);
+      }
+      pairs.add(
+          new String[] {item.substring(0, separator).trim(), item.substring(separator + 1).trim()});
+    }
+    return pairs;
+  }
+
+  private interface Step {
+    void apply(ObjectNode doc) throws IOException;
+  }
+
+  private enum Coercion {
+    STRING,
+    INT,
+    LONG,
+    DOUBLE,
+    BOOLEAN;
+
+    JsonNode coerce(String path, JsonNode value) throws IOException {
+      JsonNodeFactory nodes = JsonNodeFactory.instance;
+      try {
+        switch (this) {
+          case STRING:
+            return value.isTextual() ? value : nodes.textNode(asText(value));
+          case INT:
+            if (!value.isNumber()) {
+              return nodes.numberNode(Integer.parseInt(asText(value)));
+            }
+            if (!value.isIntegralNumber() || !value.canConvertToInt()) {
+              throw new NumberFormatException("Not an int " + value);
+            }
+            return nodes.numberNode(value.intValue());
+          case LONG:
+            if (!value.isNumber()) {
+              return nodes.numberNode(Long.parseLong(asText(value)));
+            }
+            if (!value.isIntegralNumber() || !value.canConvertToLong()) {
+              throw new NumberFormatException("Not a long " + value);
+            }
+            return nodes.numberNode(value.longValue());
+          case DOUBLE:
+            return value.isNumber()
+                ? nodes.numberNode(value.doubleValue())
+                : nodes.numberNode(Double.parseDouble(asText(value)));
+          default:
+            return value.isBoolean() ? value : nodes.booleanNode(parseBoolean(asText(value)));
+        }
+      } catch (NumberFormatException e) {
+        throw new IOException("Cannot coerce " + path + " value " + value + " to " + this, e);
+      }
+    }
+
+    private static String asText(JsonNode value) {
+      return value.isContainerNode() ? value.toString() : value.asText().trim();
+    }
+
+    private static boolean parseBoolean(String text) {
+      if (text.equalsIgnoreCase("true") || text.equals("1")) {
+        return true;
+      }
+      if (text.equalsIgnoreCase("false") || text.equals("0")) {
+        return false;
+      }
+      throw new NumberFormatException("Not a boolean " + text);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.transform;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.Settings;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * CPU bound stage that screens batches read by the I/O threads and applies {@link
+ * DocumentTransform} to them. A batch is split into shards of transformShardSize documents which
+ * run on a work stealing pool of transformThreads threads, and the shards are joined back in
+ * their original order. Documents rejected by the {@link DocumentScreen} are left out.
+ */
+public class TransformStage {
+
+  private static volatile ForkJoinPool pool;
+
+  /** Starts transforming a batch, the returned task yields the documents in the same order. */
+  public static ForkJoinTask<List<String>> submit(String source, List<String> jsonDocs) {
+    return getPool().submit(new ShardTask(source, jsonDocs, 0, jsonDocs.size(), true));
+  }
+
+  /** Transforms a batch of a source file on the stage and waits for it. */
+  public static List<String> transform(String source, List<String> jsonDocs) throws IOException {
+    return join(submit(source, jsonDocs));
+  }
+
+  /**
+   * Transforms a batch of a sorted file and waits for it, ids and partition keys are kept since
+   * the file is ordered by them.
+   */
+  public static List<String> transformSorted(String source, List<String> jsonDocs)
+      throws IOException {
+    return join(getPool().submit(new ShardTask(source, jsonDocs, 0, jsonDocs.size(), false)));
+  }
+
+  public static List<String> join(ForkJoinTask<List<String>> transformedDocs) throws IOException {
+    try {
+      return transformedDocs.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while transforming documents", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Transforming documents failed", e.getCause());
+    }
+  }
+
+  private static ForkJoinPool getPool() {
+    if (pool == null) {
+      synchronized (TransformStage.class) {
+        if (pool == null) {
+          pool = new ForkJoinPool(Settings.getTransformThreads());
+        }
+      }
+    }
+    return pool;
+  }
+
+  private static class ShardTask extends RecursiveTask<List<String>> {
+    private final String source;
+    private final List<String> jsonDocs;
+    private final int start;
+    private final int end;
+    private final boolean isIdAndPartitionKeyPatched;
+
+    ShardTask(
+        String source,
+        List<String> jsonDocs,
+        int start,
+        int end,
+        boolean isIdAndPartitionKeyPatched) {
+      this.source = source;
+      this.jsonDocs = jsonDocs;
+      this.start = start;
+      this.end = end;
+      this.isIdAndPartitionKeyPatched = isIdAndPartitionKeyPatched;
+    }
+
+    @Override
+    protected List<String> compute() {
+      if (end - start > Settings.getTransformShardSize()) {
+        int middle = (start + end) >>> 1;
+        ShardTask second =
+            new ShardTask(source, jsonDocs, middle, end, isIdAndPartitionKeyPatched);
+        second.fork();
+        List<String> transformedDocs =
+            new ShardTask(source, jsonDocs, start, middle, isIdAndPartitionKeyPatched).compute();
+        transformedDocs.addAll(second.join());
+        return transformedDocs;
+      }
+      List<String> transformedDocs = new ArrayList<>(end - start);
+      for (int i = start; i < end; i++) {
+        String transformedDoc =
+            DocumentScreen.screen(source, jsonDocs.get(i), isIdAndPartitionKeyPatched);
+        if (transformedDoc != null) {
+          transformedDocs.add(transformedDoc);
+        }
+      }
+      return transformedDocs;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.transform;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonDocBatchReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs the batches of a source reader through the {@link TransformStage}. The next batch is read
+ * and submitted before the current one is handed out, so reading the source overlaps with
+ * transforming it, and batches keep the order of the source. Batches left empty by rejected
+ * documents are skipped. The rejects of the source are closed by whoever imports it, once the
+ * bulk importer has reported its rejects as well.
+ */
+public class TransformingJsonDocBatchReader extends JsonDocBatchReader {
+
+  private final String location;
+  private final JsonDocBatchReader source;
+  private ForkJoinTask<List<String>> pendingBatch;
+
+  public TransformingJsonDocBatchReader(String location, JsonDocBatchReader source) {
+    this.location = location;
+    this.source = source;
+  }
+
+  @Override
+  protected List<String> readNextBatch() throws IOException {
+    if (pendingBatch == null) {
+      pendingBatch = submitNextBatch();
+    }
+    while (pendingBatch != null) {
+      ForkJoinTask<List<String>> currentBatch = pendingBatch;
+      pendingBatch = submitNextBatch();
+      List<String> transformedBatch = TransformStage.join(currentBatch);
+      if (!transformedBatch.isEmpty()) {
+        return transformedBatch;
+      }
+    }
+    return null;
+  }
+
+  private ForkJoinTask<List<String>> submitNextBatch() throws IOException {
+    try {
+      return source.hasNext() ? TransformStage.submit(location, source.next()) : null;
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (pendingBatch != null) {
+      pendingBatch.cancel(false);
+      pendingBatch = null;
+    }
+    source.close();
+  }
+}
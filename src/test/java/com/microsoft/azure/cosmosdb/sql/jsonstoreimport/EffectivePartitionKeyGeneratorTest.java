@@ -0,0 +1,174 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Test;
+
+/** Known effective partition keys of the Cosmos DB SDKs, version 1 and version 2 hashing. */
+public class EffectivePartitionKeyGeneratorTest {
+
+  private static final String MULTI_BYTE = "été 中文 😀";
+
+  @Test
+  public void strings() {
+    assertEpk("", "05C1CF33970FF80800", "32E9366E637A71B4E710384B2F4970A0");
+    assertEpk(
+        "partitionKey",
+        "05C1E1B3D9CD2608716273756A756A706F4C667A00",
+        "013AEFCF77FA271571CF665A58C933F1");
+    assertEpk("redmond", "05C1EFE313830C087366656E706F6500", "22E342F38A486A088463DFF7838A5963");
+  }
+
+  @Test
+  public void longStringsAreTruncatedForVersion1() {
+    StringBuilder longString = new StringBuilder();
+    StringBuilder encoded = new StringBuilder("05C1EB5921F70608");
+    for (int i = 0; i < 1024; i++) {
+      longString.append('a');
+    }
+    for (int i = 0; i < 100; i++) {
+      encoded.append("62");
+    }
+    assertEpk(
+        longString.toString(), encoded.append("00").toString(), "332BDF5512AE49615F32C7D98C2DB86C");
+  }
+
+  @Test
+  public void numbers() {
+    assertEpk(5.0, "05C1D9C1C5517C05C014", "19C08621B135968252FB34B4CF66F811");
+    assertEpk(
+        5.123124190509124,
+        "05C1CD6757FB7805C0153F858949735550",
+        "0EF2E2D82460884AF0F6440BE4F726A8");
+    assertEpk(Byte.MIN_VALUE, "05C1D73349F54C053FA0", "01DAEDABF913540367FE219B2AD06148");
+    assertEpk(Byte.MAX_VALUE, "05C1DD539DDFCC05C05FE0", "0C507ACAC853ECA7977BF4CEFB562A25");
+    assertEpk(Integer.MIN_VALUE, "05C1DFBF252BCC053E20", "0B1660D5233C3171725B30D4A5F4CC1F");
+    assertEpk(
+        Integer.MAX_VALUE, "05C1E1F503DFB205C1DFFFFFFFFC", "2D9349D64712AEB5EB1406E2F0BE2725");
+    assertEpk(Long.MIN_VALUE, "05C1DB35F33D1C053C20", "23D5C6395512BDFEAFADAD15328AD2BB");
+    assertEpk(Long.MAX_VALUE, "05C1B799AB2DD005C3E0", "2EDB959178DFCCA18983F89384D1629B");
+    assertEpk(
+        Double.MIN_VALUE,
+        "05C1E5C91F4D3005800101010101010102",
+        "0E6CBA63A280927DE485DEF865800139");
+    assertEpk(
+        Double.MAX_VALUE,
+        "05C1CBE367C53005FFEFFFFFFFFFFFFFFE",
+        "31424D996457102634591FF245DBCC4D");
+  }
+
+  @Test
+  public void booleans() {
+    assertEpk(true, "05C1D7C5A903D803", "0E711127C5B5A8E4726AC6DD306A3E59");
+    assertEpk(false, "05C1DB857D857C02", "2FE1BE91E90A3439635E0E9E37361EF2");
+  }
+
+  @Test
+  public void nullAndUndefined() {
+    assertEpk(null, "05C1ED45D7475601", "378867E4430E67857ACE5C908374FE16");
+    assertEpk(
+        UndefinedPartitionKeyComponent.VALUE,
+        "05C1D529E345DC00",
+        "11622DAA78F835834610ABE56EFF5CB5");
+  }
+
+  @Test
+  public void multiByteStringsHashTheirUtf8Bytes() {
+    byte[] utf8 = MULTI_BYTE.getBytes(StandardCharsets.UTF_8);
+    IPartitionKeyComponent component = EffectivePartitionKeyGenerator.toComponent(MULTI_BYTE);
+
+    // Version 1 hashes the type marker, the UTF-8 bytes and a terminator with MurmurHash3 x86_32
+    ByteArrayOutputStream hashed = new ByteArrayOutputStream();
+    hashed.write(0x08);
+    hashed.write(utf8, 0, utf8.length);
+    hashed.write(0x00);
+    long hash32 = Hashing.murmur3_32(0).hashBytes(hashed.toByteArray()).asInt() & 0xFFFFFFFFL;
+    assertEquals(
+        EffectivePartitionKeyGenerator.toHexEncodedBinaryString(
+            new NumberPartitionKeyComponent(hash32), component),
+        EffectivePartitionKeyGenerator.getEffectivePartitionKeyV1(component));
+    assertEquals(
+        "05C1C9C389895808C4AA75C4AA21E5B9AEE7978821F1A0998100",
+        EffectivePartitionKeyGenerator.getEffectivePartitionKeyV1(component));
+
+    // Version 2 ends the UTF-8 bytes with 0xFF and hashes them with MurmurHash3 x64_128
+    hashed.reset();
+    hashed.write(0x08);
+    hashed.write(utf8, 0, utf8.length);
+    hashed.write(0xFF);
+    assertEquals(
+        toEpkV2(Hashing.murmur3_128(0).hashBytes(hashed.toByteArray()).asBytes()),
+        EffectivePartitionKeyGenerator.getEffectivePartitionKeyV2(component));
+    assertEquals(
+        "02C20D2113C6028ECA0E9901048AF2BD",
+        EffectivePartitionKeyGenerator.getEffectivePartitionKeyV2(component));
+  }
+
+  @Test
+  public void murmurHashMatchesReferenceForAllTailLengths() {
+    Random random = new Random(42);
+    long[] hash128 = new long[2];
+    for (int length = 0; length <= 64; length++) {
+      byte[] data = new byte[length];
+      random.nextBytes(data);
+      assertEquals(
+          Hashing.murmur3_32(0).hashBytes(data).asInt(), MurmurHash3.hash32(data, length, 0));
+      MurmurHash3.hash128(data, length, 0, hash128);
+      ByteBuffer expected =
+          ByteBuffer.wrap(Hashing.murmur3_128(0).hashBytes(data).asBytes())
+              .order(ByteOrder.LITTLE_ENDIAN);
+      assertEquals(expected.getLong(0), hash128[0]);
+      assertEquals(expected.getLong(8), hash128[1]);
+    }
+  }
+
+  @Test
+  public void boundaries() {
+    assertEquals("", EffectivePartitionKeyGenerator.getEffectivePartitionKeyV1());
+    assertEquals(
+        "FF",
+        EffectivePartitionKeyGenerator.getEffectivePartitionKeyV2(
+            new InfinityPartitionKeyComponent()));
+  }
+
+  private static void assertEpk(Object value, String expectedV1, String expectedV2) {
+    IPartitionKeyComponent component = EffectivePartitionKeyGenerator.toComponent(value);
+    assertEquals(expectedV1, EffectivePartitionKeyGenerator.getEffectivePartitionKeyV1(component));
+    assertEquals(expectedV2, EffectivePartitionKeyGenerator.getEffectivePartitionKeyV2(component));
+  }
+
+  // The 128 bit hash as a big endian number with its top 2 bits cleared
+  private static String toEpkV2(byte[] littleEndianHash) {
+    StringBuilder hex = new StringBuilder();
+    for (int i = littleEndianHash.length - 1; i >= 0; i--) {
+      hex.append(String.format("%02X", littleEndianHash[i]));
+    }
+    hex.setCharAt(0, Character.forDigit(Character.digit(hex.charAt(0), 16) & 0x3, 16));
+    return hex.toString();
+  }
+}
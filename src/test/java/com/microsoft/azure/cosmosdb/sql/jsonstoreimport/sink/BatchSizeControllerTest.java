@@ -0,0 +1,109 @@
+/**
+ * The MIT License (MIT) Copyright (c) 2017 Microsoft Corporation
+ *
+ * <p>Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * <p>The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * <p>THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.azure.cosmosdb.sql.jsonstoreimport.sink;
+
+import static org.junit.Assert.assertEquals;
+
+import com.microsoft.azure.cosmosdb.sql.jsonstoreimport.source.JsonStoreEntityImportResponse;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchSizeControllerTest {
+
+  private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(5);
+  private long now;
+  private BatchSizeController controller;
+
+  @Before
+  public void setUp() {
+    // 1000 to 10000 documents per batch, growing by 1000 below 10000 RU/s
+    controller = new BatchSizeController(2000, 1000, 10000, 1000, 10000, () -> now);
+  }
+
+  @Test
+  public void increasesBelowTargetThroughput() {
+    recordWindow(1000, 1000, 1);
+    assertEquals(3000, controller.getBatchSize());
+    recordWindow(1000, 1000, 1);
+    assertEquals(4000, controller.getBatchSize());
+  }
+
+  @Test
+  public void holdsAtTargetThroughput() {
+    recordWindow(60000, 1000, 1);
+    assertEquals(2000, controller.getBatchSize());
+    recordWindow(60000, 1000, 1);
+    assertEquals(2000, controller.getBatchSize());
+  }
+
+  @Test
+  public void holdsWithinWindow() {
+    now += WINDOW_NANOS / 2;
+    controller.record(response(1000, 1000, 1));
+    assertEquals(2000, controller.getBatchSize());
+  }
+
+  @Test
+  public void decreasesWhenImportsTakeLongerPerDocument() {
+    recordWindow(1000, 1000, 1);
+    assertEquals(3000, controller.getBatchSize());
+    // Same RUs and documents taking four times as long, the importer is retrying throttles
+    recordWindow(1000, 1000, 4);
+    assertEquals(1500, controller.getBatchSize());
+    // The congested rate is the new reference, steady imports grow again
+    recordWindow(1000, 1000, 4);
+    assertEquals(2500, controller.getBatchSize());
+  }
+
+  @Test
+  public void decreasesWhenImportRequestUnitRateFalls() {
+    recordWindow(60000, 1000, 1);
+    // Documents cost the same time but the import gets far fewer RUs per second through
+    recordWindow(20000, 1000, 1);
+    assertEquals(1000, controller.getBatchSize());
+  }
+
+  @Test
+  public void staysWithinBounds() {
+    for (int i = 0; i < 20; i++) {
+      recordWindow(1000, 1000, 1);
+    }
+    assertEquals(10000, controller.getBatchSize());
+    for (int i = 0; i < 10; i++) {
+      recordWindow(1000, 1000, 10 << i);
+    }
+    assertEquals(1000, controller.getBatchSize());
+  }
+
+  private void recordWindow(double requestUnits, int documents, long importSeconds) {
+    now += WINDOW_NANOS;
+    controller.record(response(requestUnits, documents, importSeconds));
+  }
+
+  private static JsonStoreEntityImportResponse response(
+      double requestUnits, int documents, long importSeconds) {
+    JsonStoreEntityImportResponse response = new JsonStoreEntityImportResponse();
+    response.setTotalRequestUnitsConsumed(requestUnits);
+    response.setNumberOfDocumentsImported(documents);
+    response.setTotalTimeTakenInNanos(TimeUnit.SECONDS.toNanos(importSeconds));
+    return response;
+  }
+}